@@ -1,5 +1,6 @@
 package com.akarakoutev.werewolves;
 
+import com.akarakoutev.werewolves.sprite.SpriteCache;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
@@ -8,6 +9,7 @@ public class WerewolvesServer {
 
 	public static void main(String[] args) {
 		SpringApplication.run(WerewolvesServer.class, args);
+		SpriteCache.preload();
 	}
 
 }
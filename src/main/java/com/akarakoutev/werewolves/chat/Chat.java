@@ -1,20 +1,47 @@
 package com.akarakoutev.werewolves.chat;
 
-import com.akarakoutev.werewolves.player.Player;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-
+import java.io.IOException;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * A chat between players. Every message gets a sequence number, starting from 1, so that clients can apply the
+ * broadcast messages one by one and ask for anything they have missed.
+ * <br>
+ * Only the latest messages are kept in memory, in a ring of fixed capacity. Older messages are spilled to a
+ * ChatArchive, from which the history pages are read, so a chat takes the same amount of memory no matter how long it
+ * gets. A sealed chat drops its ring altogether.
+ *
+ * @author Alberto Karakoutev
+ * @see    ChatArchive
+ * @see    com.akarakoutev.werewolves.net.message.payload.ChatPayload
+ * @see    com.akarakoutev.werewolves.net.message.MessageType#CHAT
+ * @see    com.akarakoutev.werewolves.net.message.MessageType#CHAT_HISTORY
+ */
 public class Chat {
 
-    private final List<Message> messages;
+    public static final Logger logger = Logger.getLogger(Chat.class.getName());
+
+    /**
+     * The maximum number of messages in one history page
+     */
+    public static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * The number of latest messages, kept in memory
+     */
+    public static final int DEFAULT_CAPACITY = 128;
+
     private final Type type;
     private final int cycle;
-
     private final UUID id;
 
+    private final ChatArchive archive;
+    private Message[] ring;
+    private long lastSeq = 0;
+
     public enum Type {
         WEREWOLVES("ww"),
         VAMPIRES("vamp"),
@@ -31,23 +58,54 @@ public class Chat {
         }
     }
 
-    static class Message {
+    /**
+     * A page of the chat history
+     */
+    public static class Page {
+
+        private final List<Message> messages;
+        private final boolean more;
+
+        public Page(List<Message> messages, boolean more) {
+            this.messages = messages;
+            this.more = more;
+        }
+
+        public List<Message> getMessages() {
+            return messages;
+        }
+
+        /**
+         * @return Whether there are more messages after the page
+         */
+        public boolean hasMore() {
+            return more;
+        }
+    }
+
+    public static class Message {
 
-        LocalTime timestamp;
-        Player sender;
-        String message;
+        final long seq;
+        final LocalTime timestamp;
+        final String sender;
+        final String message;
 
-        public Message(LocalTime timestamp, Player sender, String message) {
+        public Message(long seq, LocalTime timestamp, String sender, String message) {
+            this.seq = seq;
             this.timestamp = timestamp;
             this.sender = sender;
             this.message = message;
         }
 
+        public long getSeq() {
+            return seq;
+        }
+
         public LocalTime getTimestamp() {
             return timestamp;
         }
 
-        public Player getSender() {
+        public String getSender() {
             return sender;
         }
 
@@ -57,15 +115,66 @@ public class Chat {
 
     }
 
+    /**
+     * Create a chat, which only keeps its latest messages
+     *
+     * @param id    The chat ID
+     * @param type  The chat type
+     * @param cycle The night, during which the chat is created
+     */
     public Chat(UUID id, Type type, int cycle) {
-        messages = new ArrayList<>();
+        this(id, type, cycle, DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * Create a chat
+     *
+     * @param id       The chat ID
+     * @param type     The chat type
+     * @param cycle    The night, during which the chat is created
+     * @param capacity The number of latest messages, kept in memory
+     * @param archive  The archive for older messages, or null if they are to be dropped
+     */
+    public Chat(UUID id, Type type, int cycle, int capacity, ChatArchive archive) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The chat capacity must be positive!");
+
+        this.ring = new Message[capacity];
         this.type = type;
         this.cycle = cycle;
         this.id = id;
+        this.archive = archive;
+    }
+
+    /**
+     * Append a message to the chat. If the ring is full, the oldest message is moved to the archive.
+     *
+     * @param timestamp The time of sending
+     * @param sender    The name of the player, who sent the message
+     * @param message   The message text
+     * @return          The appended message, with its sequence number
+     */
+    public Message addMessage(LocalTime timestamp, String sender, String message) {
+        Message appended = new Message(lastSeq + 1, timestamp, sender, message);
+        if (ring == null) {
+            archive(appended);
+        } else {
+            int slot = slot(appended.seq);
+            if (ring[slot] != null)
+                archive(ring[slot]);
+            ring[slot] = appended;
+        }
+        lastSeq = appended.seq;
+        return appended;
     }
 
-    public void addMessage(LocalTime timestamp, Player sender, String message) {
-        messages.add(new Message(timestamp, sender, message));
+    /**
+     * Get the sequence number of the last message
+     *
+     * @return The last sequence number, or 0 if the chat is empty
+     */
+    public long getLastSeq() {
+        return lastSeq;
     }
 
     public Type getType() {
@@ -80,21 +189,101 @@ public class Chat {
         return id;
     }
 
-    public JsonObject serialize() {
-        JsonObject serializedChat = new JsonObject();
-        JsonArray serializedMessages = new JsonArray();
-        for (Message message : messages) {
-            JsonObject messageJson = new JsonObject();
-            messageJson.addProperty("ts", message.getTimestamp().toString().split("[.]")[0]);
-            messageJson.addProperty("sender", message.getSender().getName());
-            messageJson.addProperty("message", message.getMessage());
-            serializedMessages.add(messageJson);
-        }
-        serializedChat.add("messages", serializedMessages);
-        serializedChat.addProperty("type", type.getValue());
-        serializedChat.addProperty("cycle", Integer.toString(cycle));
-        serializedChat.addProperty("id", id.toString());
-        return serializedChat;
+    /**
+     * Move all messages to the archive and release the ring. Called once the chat is over, e.g. when the day ends.
+     * Messages sent afterwards go straight to the archive.
+     */
+    public void seal() {
+        if (ring == null || archive == null)
+            return;
+
+        for (long seq = firstSeqInMemory(); seq <= lastSeq; seq++) {
+            archive(ring[slot(seq)]);
+        }
+        ring = null;
+        try {
+            archive.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not close the archive of chat " + id, e);
+        }
+    }
+
+    /**
+     * Release the chat and delete its archive
+     */
+    public void delete() {
+        ring = null;
+        if (archive == null)
+            return;
+        try {
+            archive.delete();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not delete the archive of chat " + id, e);
+        }
+    }
+
+    /**
+     * Get the messages, which are still in memory
+     *
+     * @return The latest messages, in sequence order
+     */
+    public List<Message> getLatestMessages() {
+        return inMemory(firstSeqInMemory(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a page of the chat history. Messages, which are no longer in memory, are read from the archive.
+     *
+     * @param since The sequence number after which to start
+     * @param limit The maximum number of messages, capped at {@link #MAX_PAGE_SIZE}
+     * @return      The page
+     * @throws      IOException If the archive can not be read
+     */
+    public Page getHistory(long since, int limit) throws IOException {
+        int pageSize = Math.max(0, Math.min(limit, MAX_PAGE_SIZE));
+        long from = Math.max(since, 0) + 1;
+        long firstInMemory = firstSeqInMemory();
+
+        List<Message> page = new ArrayList<>();
+        if (from < firstInMemory && archive != null) {
+            page.addAll(archive.read(from, firstInMemory, pageSize));
+        }
+        if (page.size() < pageSize) {
+            page.addAll(inMemory(Math.max(from, firstInMemory), pageSize - page.size()));
+        }
+
+        long lastInPage = page.isEmpty() ? Math.min(from - 1, lastSeq) : page.get(page.size() - 1).seq;
+        return new Page(page, lastInPage < lastSeq);
+    }
+
+    private long firstSeqInMemory() {
+        if (ring == null)
+            return lastSeq + 1;
+        return Math.max(1, lastSeq - ring.length + 1);
+    }
+
+    private List<Message> inMemory(long from, int limit) {
+        List<Message> messages = new ArrayList<>();
+        if (ring == null)
+            return messages;
+        for (long seq = from; seq <= lastSeq && messages.size() < limit; seq++) {
+            messages.add(ring[slot(seq)]);
+        }
+        return messages;
+    }
+
+    private int slot(long seq) {
+        return (int) ((seq - 1) % ring.length);
+    }
+
+    private void archive(Message message) {
+        if (archive == null)
+            return;
+        try {
+            archive.append(message);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not archive message " + message.seq + " of chat " + id, e);
+        }
     }
 
 }
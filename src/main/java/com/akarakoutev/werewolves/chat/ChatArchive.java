@@ -0,0 +1,153 @@
+package com.akarakoutev.werewolves.chat;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * An append-only file segment, holding the messages of a chat which no longer fit in its in-memory ring. Records are
+ * written in sequence order as <i>seq, time of day, sender, text</i>, with both strings length-prefixed UTF-8.
+ * <br>
+ * The file offset of every {@link #INDEX_INTERVAL}th record is kept in memory, so a page is read by seeking close to
+ * its first record, instead of reading the segment from its start.
+ *
+ * @author Alberto Karakoutev
+ * @see Chat
+ */
+public class ChatArchive implements Closeable {
+
+    /**
+     * The number of records between two indexed offsets
+     */
+    static final int INDEX_INTERVAL = 64;
+
+    private final Path file;
+    private final NavigableMap<Long, Long> index = new TreeMap<>();
+    private DataOutputStream out;
+    private long size = -1;
+    private long records = 0;
+
+    public ChatArchive(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Append a message to the end of the segment. The file is created on the first write.
+     *
+     * @param message The message to be archived
+     * @throws        IOException If the file can not be written
+     */
+    public void append(Chat.Message message) throws IOException {
+        if (out == null) {
+            Files.createDirectories(file.getParent());
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+            size = Files.size(file);
+        }
+        if (records++ % INDEX_INTERVAL == 0)
+            index.put(message.getSeq(), size);
+
+        out.writeLong(message.getSeq());
+        out.writeLong(message.getTimestamp().toNanoOfDay());
+        size += Long.BYTES * 2;
+        size += writeString(message.getSender());
+        size += writeString(message.getMessage());
+    }
+
+    /**
+     * Read archived messages in sequence order
+     *
+     * @param from  The first sequence number to read
+     * @param to    The sequence number at which to stop, exclusive
+     * @param limit The maximum number of messages
+     * @return      The messages
+     * @throws      IOException If the file can not be read
+     */
+    public List<Chat.Message> read(long from, long to, int limit) throws IOException {
+        List<Chat.Message> messages = new ArrayList<>();
+        if (out != null)
+            out.flush();
+        if (limit <= 0 || !Files.exists(file))
+            return messages;
+
+        Map.Entry<Long, Long> start = index.floorEntry(from);
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(
+                     channel.position(start == null ? 0 : start.getValue()))))) {
+            while (messages.size() < limit) {
+                long seq;
+                try {
+                    seq = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (seq >= to)
+                    break;
+
+                long nanoOfDay = in.readLong();
+                if (seq < from) {
+                    skipString(in);
+                    skipString(in);
+                    continue;
+                }
+                messages.add(new Chat.Message(seq, LocalTime.ofNanoOfDay(nanoOfDay), readString(in), readString(in)));
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Close and remove the segment file
+     *
+     * @throws IOException If the file can not be removed
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * @return The number of bytes written
+     */
+    private int writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return Integer.BYTES + bytes.length;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(DataInputStream in) throws IOException {
+        int remaining = in.readInt();
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0)
+                throw new EOFException();
+            remaining -= skipped;
+        }
+    }
+
+}
@@ -18,6 +18,11 @@ public class Game {
 	private boolean started = false;
 	private final String gameID;
 
+	/**
+	 * Grows with every change of the game state, so clients can ask for what has changed since a version they have
+	 */
+	private long version = 0;
+
 	public List<Player> inGame = new ArrayList<>();
 
 	private final Map<UUID, Chat> chats;
@@ -35,10 +40,9 @@ public class Game {
 		VAMPIRES
 	}
 
-	public Game(int numberOfPlayers) {
-		Random r = new Random();
+	public Game(String gameID, int numberOfPlayers) {
 		this.numberOfPlayers = numberOfPlayers;
-		this.gameID = Integer.toString(r.nextInt(10000));
+		this.gameID = gameID;
 		chats = new HashMap<>();
 		votes = new HashMap<>();
 		lynched = new HashMap<>();
@@ -123,6 +127,13 @@ public class Game {
 		troublemakerNight = night;
 	}
 
+	public long getVersion() {
+		return version;
+	}
+	public long nextVersion() {
+		return ++version;
+	}
+
 	public Map<UUID, Chat> getChats() {
 		return chats;
 	}
@@ -0,0 +1,325 @@
+package com.akarakoutev.werewolves.game;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A listing of all games for the lobby browser, kept up to date as games are created, joined, left, started and
+ * removed, instead of being rebuilt from the games on every request. The open and the started games are indexed on
+ * their own, both over all games and per number of player slots, so a filtered listing only walks the games, which
+ * it lists.
+ * <br>
+ * Every change bumps the version of the directory, so a listing can be cached until the version moves. The changed
+ * game is stamped with the new version as its revision and handed to the listeners, so they can push it on without
+ * listing the directory again.
+ * <br>
+ * The changes of one game are made atomically, one after the other, so a command which finishes while its game is
+ * being removed can not list the game again.
+ *
+ * @author Alberto Karakoutev
+ * @see GameRegistry
+ */
+public class GameDirectory {
+
+    /**
+     * Game IDs end in a decimal sequence number after a fixed-length node ID, so they are ordered by length first
+     */
+    private static final Comparator<String> BY_ID = Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    private final ConcurrentMap<String, Entry> games = new ConcurrentHashMap<>();
+    private final Index all = new Index();
+
+    /**
+     * The games of every size, by their number of player slots. The sizes are few, so an index, which has become
+     * empty, is kept.
+     */
+    private final ConcurrentMap<Integer, Index> sizes = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The games, which a listing is filtered to
+     */
+    public enum Filter {
+        ALL(entry -> true),
+        /**
+         * The games, which a player can still join
+         */
+        OPEN(Entry::isOpen),
+        STARTED(Entry::isStarted);
+
+        private final Predicate<Entry> matches;
+
+        Filter(Predicate<Entry> matches) {
+            this.matches = matches;
+        }
+    }
+
+    /**
+     * The IDs of a set of games, in the order of their creation, with the open and the started ones on their own
+     */
+    private static final class Index {
+
+        final NavigableSet<String> ids = new ConcurrentSkipListSet<>(BY_ID);
+        final NavigableSet<String> open = new ConcurrentSkipListSet<>(BY_ID);
+        final NavigableSet<String> started = new ConcurrentSkipListSet<>(BY_ID);
+
+        void add(Entry entry) {
+            ids.add(entry.id);
+            mark(open, entry.id, entry.isOpen());
+            mark(started, entry.id, entry.started);
+        }
+
+        void remove(String gameId) {
+            ids.remove(gameId);
+            open.remove(gameId);
+            started.remove(gameId);
+        }
+
+        NavigableSet<String> get(Filter filter) {
+            switch (filter) {
+                case OPEN:
+                    return open;
+                case STARTED:
+                    return started;
+                default:
+                    return ids;
+            }
+        }
+
+        private static void mark(NavigableSet<String> set, String gameId, boolean member) {
+            if (member) {
+                set.add(gameId);
+            } else {
+                set.remove(gameId);
+            }
+        }
+    }
+
+    /**
+     * Notified of every change of the listing, on the thread which made it. It should only record the change.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * @param gameId   The game ID of the changed game
+         * @param entry    The new listed state of the game, or null if the game has been removed
+         * @param revision The version of the directory, at which the change was made
+         */
+        void changed(String gameId, Entry entry, long revision);
+    }
+
+    /**
+     * The listed state of one game
+     */
+    public static final class Entry {
+
+        private final String id;
+        private final int players;
+        private final int numberOfPlayers;
+        private final boolean started;
+        private final long revision;
+
+        Entry(String id, int players, int numberOfPlayers, boolean started, long revision) {
+            this.id = id;
+            this.players = players;
+            this.numberOfPlayers = numberOfPlayers;
+            this.started = started;
+            this.revision = revision;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getPlayers() {
+            return players;
+        }
+
+        public int getNumberOfPlayers() {
+            return numberOfPlayers;
+        }
+
+        public boolean isStarted() {
+            return started;
+        }
+
+        /**
+         * @return The version of the directory, at which the game was last changed
+         */
+        public long getRevision() {
+            return revision;
+        }
+
+        /**
+         * @return Whether a player can still join the game
+         */
+        public boolean isOpen() {
+            return !started && players < numberOfPlayers;
+        }
+
+        private boolean sameAs(int players, int numberOfPlayers, boolean started) {
+            return this.players == players && this.numberOfPlayers == numberOfPlayers && this.started == started;
+        }
+
+        /**
+         * @return The occupied slots, as <i>players/numberOfPlayers</i>
+         * @see    Game#toString()
+         */
+        @Override
+        public String toString() {
+            return players + "/" + numberOfPlayers;
+        }
+    }
+
+    /**
+     * Bring the listing of a game up to date. Called after every command of the game, so it only bumps the version if
+     * something listed has changed.
+     *
+     * @param game The game
+     */
+    public void update(Game game) {
+        update(game, () -> true);
+    }
+
+    /**
+     * Bring the listing of a game up to date, if the game is still listed
+     *
+     * @param game   The game
+     * @param listed Whether the game is still registered. It is checked atomically with the update, so a removal,
+     *               which unregisters the game before it removes it from the listing, can not be undone by the update.
+     */
+    public void update(Game game, BooleanSupplier listed) {
+        int players = game.getPlayers().size();
+        int numberOfPlayers = game.getNumberOfPlayers();
+        boolean started = game.getStarted();
+        games.compute(game.getID(), (id, previous) -> {
+            if (!listed.getAsBoolean() || (previous != null && previous.sameAs(players, numberOfPlayers, started)))
+                return previous;
+
+            Entry entry = new Entry(id, players, numberOfPlayers, started, version.incrementAndGet());
+            if (previous != null && previous.numberOfPlayers != numberOfPlayers)
+                sizes.get(previous.numberOfPlayers).remove(id);
+            all.add(entry);
+            sizes.computeIfAbsent(numberOfPlayers, size -> new Index()).add(entry);
+            notifyListeners(id, entry, entry.revision);
+            return entry;
+        });
+    }
+
+    /**
+     * Remove a game from the listing
+     *
+     * @param gameId The game ID for the target game
+     */
+    public void remove(String gameId) {
+        games.computeIfPresent(gameId, (id, previous) -> {
+            unlist(previous, version.incrementAndGet());
+            return null;
+        });
+    }
+
+    /**
+     * Remove all games from the listing
+     */
+    public void clear() {
+        long revision = version.incrementAndGet();
+        for (String gameId : games.keySet()) {
+            games.computeIfPresent(gameId, (id, previous) -> {
+                unlist(previous, revision);
+                return null;
+            });
+        }
+    }
+
+    private void unlist(Entry entry, long revision) {
+        all.remove(entry.id);
+        sizes.get(entry.numberOfPlayers).remove(entry.id);
+        notifyListeners(entry.id, null, revision);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(String gameId, Entry entry, long revision) {
+        for (Listener listener : listeners) {
+            listener.changed(gameId, entry, revision);
+        }
+    }
+
+    /**
+     * Get the version of the listing, which grows with every change. Read it before listing, so that a listing is
+     * never tagged with a newer version than its contents.
+     *
+     * @return The version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * List a page of the games, in the order of their creation
+     *
+     * @param openOnly Whether to list only the games which a player can still join
+     * @param size     The number of player slots of the listed games, or 0 for any
+     * @param offset   The number of matching games to skip
+     * @param limit    The maximum number of games to list
+     * @return         The listed games
+     * @see            #list(Filter, int, int, int)
+     */
+    public List<Entry> list(boolean openOnly, int size, int offset, int limit) {
+        return list(openOnly ? Filter.OPEN : Filter.ALL, size, offset, limit);
+    }
+
+    /**
+     * List a page of the games, in the order of their creation. Only the index of the filter and the size is walked.
+     *
+     * @param filter The games to list
+     * @param size   The number of player slots of the listed games, or 0 for any
+     * @param offset The number of matching games to skip
+     * @param limit  The maximum number of games to list
+     * @return       The listed games
+     */
+    public List<Entry> list(Filter filter, int size, int offset, int limit) {
+        List<Entry> page = new ArrayList<>();
+        Index index = size > 0 ? sizes.get(size) : all;
+        if (index == null)
+            return page;
+
+        int skipped = 0;
+        Collection<String> listed = index.get(filter);
+        for (String id : listed) {
+            if (page.size() >= limit)
+                break;
+            // The indices are not updated at once with the entry, so a game, which is just changing, is checked again
+            Entry entry = games.get(id);
+            if (entry == null || !filter.matches.test(entry) || (size > 0 && entry.numberOfPlayers != size))
+                continue;
+            if (skipped++ < offset)
+                continue;
+            page.add(entry);
+        }
+        return page;
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+}
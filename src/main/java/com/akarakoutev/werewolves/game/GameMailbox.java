@@ -0,0 +1,198 @@
+package com.akarakoutev.werewolves.game;
+
+import com.akarakoutev.werewolves.net.exc.GameNotFoundException;
+import com.akarakoutev.werewolves.net.exc.PlayerNotFoundException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single-consumer command queue, owned by a GameManager. All commands for one game are executed one at a time and
+ * in the order they were submitted, so the game state needs no further synchronization. The mailboxes of different
+ * games are drained in parallel by a worker pool, shared by the whole server.
+ *
+ * @author Alberto Karakoutev
+ * @see GameManager
+ */
+public class GameMailbox {
+
+    /**
+     * The maximum number of commands executed in one go, before the worker is handed to the next game
+     */
+    private static final int DRAIN_LIMIT = 64;
+
+    /**
+     * The scopes, which wrap every queued command
+     */
+    private static final List<CommandScope> scopes = new CopyOnWriteArrayList<>();
+
+    private static final ExecutorService workers = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new WorkerFactory());
+
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile Thread consumer;
+
+    /**
+     * A unit of work on the game state, which produces a result
+     *
+     * @param <T> The result type
+     */
+    @FunctionalInterface
+    public interface Command<T> {
+        T call() throws GameNotFoundException, PlayerNotFoundException, IOException;
+    }
+
+    /**
+     * A unit of work on the game state, which produces no result
+     */
+    @FunctionalInterface
+    public interface Action {
+        void run() throws GameNotFoundException, PlayerNotFoundException, IOException;
+    }
+
+    /**
+     * A hook around every queued command, run on the worker thread. Commands which are nested into a running command
+     * are part of its scope.
+     */
+    public interface CommandScope {
+
+        /**
+         * Called before the command is executed
+         */
+        void begin();
+
+        /**
+         * Called after the command has finished, before its result is handed to the caller, even if it has failed
+         */
+        void end();
+    }
+
+    /**
+     * Register a scope for all the commands of all games
+     *
+     * @param scope The command scope
+     */
+    public static void addScope(CommandScope scope) {
+        scopes.add(scope);
+    }
+
+    /**
+     * Remove a registered scope
+     *
+     * @param scope The command scope
+     */
+    public static void removeScope(CommandScope scope) {
+        scopes.remove(scope);
+    }
+
+    /**
+     * Queue a command without waiting for it
+     *
+     * @param command The command to be executed
+     * @return        A future, completed with the result of the command
+     */
+    public <T> CompletableFuture<T> submit(Command<T> command) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        commands.add(() -> {
+            T value = null;
+            Throwable failure = null;
+            for (CommandScope scope : scopes) {
+                scope.begin();
+            }
+            try {
+                value = command.call();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                for (CommandScope scope : scopes) {
+                    try {
+                        scope.end();
+                    } catch (RuntimeException e) {
+                        if (failure == null)
+                            failure = e;
+                    }
+                }
+            }
+            if (failure != null)
+                result.completeExceptionally(failure);
+            else
+                result.complete(value);
+        });
+        schedule();
+        return result;
+    }
+
+    /**
+     * Queue a command and wait for its result. A command, which is already running inside this mailbox, is executed
+     * in place, so nested calls can not deadlock.
+     *
+     * @param command The command to be executed
+     * @return        The result of the command
+     * @throws        GameNotFoundException   If the command has thrown it
+     * @throws        PlayerNotFoundException If the command has thrown it
+     * @throws        IOException             If the command has thrown it
+     */
+    public <T> T call(Command<T> command) throws GameNotFoundException, PlayerNotFoundException, IOException {
+        if (Thread.currentThread() == consumer)
+            return command.call();
+
+        try {
+            return submit(command).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof GameNotFoundException)
+                throw (GameNotFoundException) cause;
+            if (cause instanceof PlayerNotFoundException)
+                throw (PlayerNotFoundException) cause;
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            workers.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        consumer = Thread.currentThread();
+        try {
+            for (int i = 0; i < DRAIN_LIMIT; i++) {
+                Runnable command = commands.poll();
+                if (command == null)
+                    break;
+                command.run();
+            }
+        } finally {
+            consumer = null;
+            scheduled.set(false);
+            if (!commands.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "game-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.akarakoutev.werewolves.game;
 
 import com.akarakoutev.werewolves.chat.Chat;
+import com.akarakoutev.werewolves.chat.ChatArchive;
 import com.akarakoutev.werewolves.player.Player;
 import com.akarakoutev.werewolves.roles.generic.Diseased;
 import com.akarakoutev.werewolves.roles.generic.Hunter;
@@ -11,16 +12,23 @@ import com.akarakoutev.werewolves.roles.targeter.Werewolf;
 import com.akarakoutev.werewolves.roles.wakeable.WakeableRole;
 import com.akarakoutev.werewolves.roles.targeter.TargeterRole;
 import com.akarakoutev.werewolves.player.PlayerManager;
+import com.akarakoutev.werewolves.net.exc.GameNotFoundException;
 import com.akarakoutev.werewolves.net.exc.PlayerNotFoundException;
+import com.akarakoutev.werewolves.sprite.Sprite;
 import com.akarakoutev.werewolves.vote.Vote;
-import com.google.gson.Gson;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.MessageFormat;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.FileHandler;
+import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
@@ -38,11 +46,24 @@ public class GameManager {
     public static final Logger logger = Logger.getLogger(GameManager.class.getName());
 
     private final PlayerManager playerManager;
+    private final GameMailbox mailbox;
+    private final ReplayBuffer replayBuffer;
     private final Game game;
+    private final GameView view;
 
-    public GameManager(int numberOfPlayers) {
-        game = new Game(numberOfPlayers);
+    private static final String CHAT_ARCHIVE_EXTENSION = ".seg";
+
+    private final Path chatDirectory;
+    private volatile PhaseTimer.Timeout phaseDeadline;
+    private volatile Consumer<GameManager> listener;
+
+    public GameManager(String gameId, int numberOfPlayers) {
+        game = new Game(gameId, numberOfPlayers);
+        chatDirectory = Paths.get("logs", "chats", "game_" + gameId);
         playerManager = new PlayerManager(game);
+        mailbox = new GameMailbox();
+        replayBuffer = new ReplayBuffer();
+        view = new GameView(game);
         try {
             FileHandler fh = new FileHandler("logs/game_" + game.getID() + ".log");
             logger.addHandler(fh);
@@ -60,6 +81,149 @@ public class GameManager {
     }
 
 
+    /**
+     * Get the buffer of the latest frames, sent to the topics of the game. Unlike the game state, the buffer may be
+     * used outside of the mailbox.
+     *
+     * @return The replay buffer
+     */
+    public ReplayBuffer getReplayBuffer() {
+        return replayBuffer;
+    }
+
+    /**
+     * Get the per-player view of the game. Must be used inside the mailbox.
+     *
+     * @return The game view
+     */
+    public GameView getView() {
+        return view;
+    }
+
+    /**
+     * Execute an action on the game's mailbox and wait for it to finish. All reads and writes of the game state
+     * should go through here, so that a game is never changed by two threads at once.
+     *
+     * @param action The action to be executed
+     * @see          GameMailbox#call(GameMailbox.Command)
+     * @see          Game#getVersion()
+     */
+    public void execute(GameMailbox.Action action) throws GameNotFoundException, PlayerNotFoundException, IOException {
+        mailbox.call(() -> {
+            try {
+                action.run();
+            } finally {
+                game.nextVersion();
+                notifyListener();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Execute a command on the game's mailbox and wait for its result
+     *
+     * @param command The command to be executed
+     * @return        The result of the command
+     * @see           GameMailbox#call(GameMailbox.Command)
+     */
+    public <T> T query(GameMailbox.Command<T> command) throws GameNotFoundException, PlayerNotFoundException, IOException {
+        return mailbox.call(() -> {
+            try {
+                return command.call();
+            } finally {
+                notifyListener();
+            }
+        });
+    }
+
+    /**
+     * Queue an action on the game's mailbox without waiting for it. Failures are logged.
+     *
+     * @param action The action to be executed
+     * @see          GameMailbox#submit(GameMailbox.Command)
+     */
+    public void post(GameMailbox.Action action) {
+        mailbox.submit(() -> {
+            try {
+                action.run();
+            } finally {
+                game.nextVersion();
+                notifyListener();
+            }
+            return null;
+        }).exceptionally(t -> {
+            logger.log(Level.SEVERE, "Game " + game.getID() + " has failed to run a command", t);
+            return null;
+        });
+    }
+
+    /**
+     * Set the listener, which is called on the mailbox after every command, e.g. to keep the game directory up to date
+     *
+     * @param listener The listener
+     * @see            GameDirectory#update(Game)
+     */
+    public void setListener(Consumer<GameManager> listener) {
+        this.listener = listener;
+    }
+
+    private void notifyListener() {
+        Consumer<GameManager> current = listener;
+        if (current != null)
+            current.accept(this);
+    }
+
+    /**
+     * Queue an action on the game's mailbox after a given delay, without blocking the calling thread
+     *
+     * @param delay  The delay
+     * @param unit   The unit of the delay
+     * @param action The action to be executed
+     * @return       The handle of the scheduled action
+     * @see          PhaseTimer
+     */
+    public PhaseTimer.Timeout schedule(long delay, TimeUnit unit, GameMailbox.Action action) {
+        return PhaseTimer.getInstance().schedule(delay, unit, () -> post(action));
+    }
+
+    /**
+     * Arm the deadline of the current phase, replacing the deadline of the previous phase. The action should check
+     * that the phase is still running, as the deadline can fire right before it is replaced.
+     *
+     * @param seconds  The time, given for the phase
+     * @param onExpire The action, which resolves the phase with a default
+     * @see            #schedule(long, TimeUnit, GameMailbox.Action)
+     */
+    public void setPhaseDeadline(long seconds, GameMailbox.Action onExpire) {
+        clearPhaseDeadline();
+        phaseDeadline = schedule(seconds, TimeUnit.SECONDS, onExpire);
+    }
+
+    /**
+     * Cancel the deadline of the current phase, if there is one
+     */
+    public void clearPhaseDeadline() {
+        PhaseTimer.Timeout deadline = phaseDeadline;
+        if (deadline != null) {
+            deadline.cancel();
+            phaseDeadline = null;
+        }
+    }
+
+    /**
+     * Release the resources of a game, which is removed. Stops the phase deadline and deletes the chat archives.
+     */
+    public void close() {
+        clearPhaseDeadline();
+        game.getChats().values().forEach(Chat::delete);
+        try {
+            Files.deleteIfExists(chatDirectory);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not delete the chat archives of game " + game.getID(), e);
+        }
+    }
+
     /**
      * Update the game state to day. Check all daily conditions. 
      * @return Whether the game is over
@@ -392,29 +556,7 @@ public class GameManager {
     }
 
     /**
-     * Generate a JSON string from a role, following the <u>role.json</u> schema
-     *
-     * @param role The role to be serialized
-     * <br><b>[Serialized]</b> <i>name</i> - The name of the role
-     * <br><b>[Serialized]</b> <i>team</i> - The team of the role
-     * <br><b>[Serialized]</b> <i>sprite</i> - The sprite of the role
-     * <br><b>[Serialized]</b> <i>gameId</i> - The game ID of the target game
-     * <br><b>[Serialized]</b> <i>awoken</i> - Whether the role has been awoken
-     * @see        Role
-     */
-    public String serializeRole(Role role) throws IOException {
-        Map<String, Object> roleMap = new HashMap<>();
-        Gson serializer = new Gson();
-        roleMap.put("name", role.name);
-        roleMap.put("team", role.team.name());
-        roleMap.put("sprite", getRoleSpriteEncoded(role));
-        roleMap.put("gameId", role.gameId);
-        roleMap.put("owner", role.owner.getName());
-        return serializer.toJson(roleMap);
-    }
-
-    /**
-     * Create a new chat
+     * Create a new chat. The previous chats of the same type are over, so they are sealed and kept only on disk.
      *
      * @param type The chat type
      * @param id   The chat ID
@@ -422,7 +564,12 @@ public class GameManager {
      * @see        Chat
      */
     public Chat createChat(Chat.Type type, UUID id) {
-        Chat chat = new Chat(id, type, game.getNights());
+        game.getChats().values().stream()
+                .filter(previous -> previous.getType() == type)
+                .forEach(Chat::seal);
+
+        ChatArchive archive = new ChatArchive(chatDirectory.resolve(id + CHAT_ARCHIVE_EXTENSION));
+        Chat chat = new Chat(id, type, game.getNights(), Chat.DEFAULT_CAPACITY, archive);
         game.getChats().put(id, chat);
         logger.info("Created chat " + id + " with type: " + type.name());
 
@@ -470,10 +617,25 @@ public class GameManager {
     }
 
     /**
-     * @see Chat#addMessage(LocalTime, Player, String)
+     * Get a chat of the game
+     *
+     * @param id The chat ID
+     * @return   The chat
+     * @throws   IllegalArgumentException If the game has no such chat
+     */
+    public Chat getChat(UUID id) {
+        Chat chat = game.getChats().get(id);
+        if (chat == null)
+            throw new IllegalArgumentException("Chat " + id + " not found!");
+
+        return chat;
+    }
+
+    /**
+     * @see Chat#addMessage(LocalTime, String, String)
      */
-    public void addChatMessage(UUID id, LocalTime timestamp, Player sender, String message) {
-        game.getChats().get(id).addMessage(timestamp, sender, message);
+    public Chat.Message addChatMessage(UUID id, LocalTime timestamp, Player sender, String message) {
+        return getChat(id).addMessage(timestamp, sender.getName(), message);
     }
 
     /**
@@ -505,7 +667,10 @@ public class GameManager {
     /**
      * @see PlayerManager#removePlayer(Player)
      */
-    public void removePlayer(Player player) { playerManager.removePlayer(player); }
+    public void removePlayer(Player player) {
+        playerManager.removePlayer(player);
+        view.forget(player.getName());
+    }
     /**
      * @see PlayerManager#getPlayer(String)
      */
@@ -519,9 +684,9 @@ public class GameManager {
         return playerManager.getPlayer(index);
     }
     /**
-     * @see PlayerManager#getRoleSpriteEncoded(Role)
+     * @see PlayerManager#getRoleSprite(Role, int)
      */
-    public String getRoleSpriteEncoded(Role role) throws IOException { return playerManager.getRoleSpriteEncoded(role); }
+    public Sprite getRoleSprite(Role role, int width) throws IOException { return playerManager.getRoleSprite(role, width); }
     /**
      * @see PlayerManager#sleepPlayerRoles(Player)
      */
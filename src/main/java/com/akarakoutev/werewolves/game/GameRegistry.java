@@ -0,0 +1,128 @@
+package com.akarakoutev.werewolves.game;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe storage of all the currently played games. Lookups never take a lock, game IDs are handed out by a
+ * sequence, so a newly created game can never overwrite a live one.
+ * <br>
+ * Every game ID starts with the node ID of its registry, e.g. <i>3f9a21bc-1000</i>. In relay mode, several servers
+ * publish to the same broker, and the node ID keeps their games on distinct topics.
+ *
+ * @author Alberto Karakoutev
+ * @see GameManager
+ * @see GameDirectory
+ */
+public class GameRegistry {
+
+    private static final int FIRST_GAME_ID = 1000;
+
+    private final String node;
+    private final ConcurrentMap<String, GameManager> games = new ConcurrentHashMap<>();
+    private final AtomicInteger nextGameId = new AtomicInteger(FIRST_GAME_ID);
+    private final GameDirectory directory = new GameDirectory();
+
+    /**
+     * Create a registry under a random node ID
+     */
+    public GameRegistry() {
+        this(UUID.randomUUID().toString().substring(0, 8));
+    }
+
+    /**
+     * Create a registry
+     *
+     * @param node The node ID, which is unique among the servers sharing a broker
+     */
+    public GameRegistry(String node) {
+        this.node = node;
+    }
+
+    /**
+     * Create a new game under a freshly allocated ID and register it
+     *
+     * @param numberOfPlayers The number of player slots
+     * @return                The game manager of the new game
+     */
+    public GameManager create(int numberOfPlayers) {
+        String gameId = node + "-" + nextGameId.getAndIncrement();
+        GameManager gameManager = new GameManager(gameId, numberOfPlayers);
+        if (games.putIfAbsent(gameId, gameManager) != null)
+            throw new IllegalStateException("Game " + gameId + " is already registered!");
+
+        directory.update(gameManager.getGame(), () -> games.get(gameId) == gameManager);
+        gameManager.setListener(changed -> directory.update(changed.getGame(), () -> games.get(gameId) == changed));
+        return gameManager;
+    }
+
+    /**
+     * Get a registered game
+     *
+     * @param gameId The game ID for the target game
+     * @return       The game manager, or null if there is no such game
+     */
+    public GameManager get(String gameId) {
+        if (gameId == null)
+            return null;
+        return games.get(gameId);
+    }
+
+    /**
+     * Unregister a game. It is unregistered before it is removed from the directory, so a command, which finishes in
+     * between, does not list it again.
+     *
+     * @param gameId The game ID for the target game
+     * @return       The removed game manager, or null if there was no such game
+     */
+    public GameManager remove(String gameId) {
+        if (gameId == null)
+            return null;
+        GameManager removed = games.remove(gameId);
+        directory.remove(gameId);
+        return removed;
+    }
+
+    /**
+     * Unregister all games
+     */
+    public void clear() {
+        games.clear();
+        directory.clear();
+    }
+
+    /**
+     * Get the ID of this server, which prefixes the IDs of its games
+     *
+     * @return The node ID
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * Get the listing of all registered games
+     *
+     * @return The game directory
+     */
+    public GameDirectory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get a weakly consistent view of all registered games
+     *
+     * @return The game managers
+     */
+    public Collection<GameManager> values() {
+        return games.values();
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+}
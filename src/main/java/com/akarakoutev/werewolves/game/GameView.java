@@ -0,0 +1,218 @@
+package com.akarakoutev.werewolves.game;
+
+import com.akarakoutev.werewolves.chat.Chat;
+import com.akarakoutev.werewolves.net.message.payload.ViewPayload;
+import com.akarakoutev.werewolves.player.Player;
+import com.akarakoutev.werewolves.vote.Vote;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Builds the part of a game, which one player may see, split into sections: the game phase, the players, the
+ * player's own roles, and the chats and votes the player takes part in.
+ * <br>
+ * Every section is fingerprinted. The fingerprints a player was last shown are remembered together with the game
+ * version at which the section last changed, so a client which passes the version of its last view only receives the
+ * sections that have changed since. Must be used inside the game's mailbox.
+ *
+ * @author Alberto Karakoutev
+ * @see Game#getVersion()
+ * @see ViewPayload
+ */
+public class GameView {
+
+    public static final String GAME = "game";
+    public static final String PLAYERS = "players";
+    public static final String SELF = "self";
+    public static final String CHATS = "chats";
+    public static final String VOTES = "votes";
+
+    private final Game game;
+
+    /**
+     * The sections last shown to each player, by player name and section name
+     */
+    private final Map<String, Map<String, Observed>> observed = new HashMap<>();
+
+    /**
+     * The sections last shown to the public view
+     */
+    private final Map<String, Observed> observedPublic = new HashMap<>();
+
+    private static class Observed {
+
+        final long fingerprint;
+        final long version;
+
+        Observed(long fingerprint, long version) {
+            this.fingerprint = fingerprint;
+            this.version = version;
+        }
+    }
+
+    public GameView(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Build the view of a player
+     *
+     * @param player The player
+     * @param since  The version of the client's last view, or 0 for the full view
+     * @return       The sections, which have changed after <i>since</i>, and the current version
+     */
+    public ViewPayload render(Player player, long since) {
+        Map<String, JsonElement> sections = new LinkedHashMap<>();
+        sections.put(GAME, game());
+        sections.put(PLAYERS, players());
+        sections.put(SELF, self(player));
+        sections.put(CHATS, chats(player));
+        sections.put(VOTES, votes(player));
+        return diff(sections, observed.computeIfAbsent(player.getName(), name -> new HashMap<>()), since);
+    }
+
+    /**
+     * Build the view, which anyone may see: the game phase, the players, and the chats and votes of the whole village
+     *
+     * @param since The version of the client's last view, or 0 for the full view
+     * @return      The sections, which have changed after <i>since</i>, and the current version
+     */
+    public ViewPayload renderPublic(long since) {
+        Map<String, JsonElement> sections = new LinkedHashMap<>();
+        sections.put(GAME, game());
+        sections.put(PLAYERS, players());
+        sections.put(CHATS, chats(null));
+        sections.put(VOTES, votes(null));
+        return diff(sections, observedPublic, since);
+    }
+
+    private ViewPayload diff(Map<String, JsonElement> sections, Map<String, Observed> shown, long since) {
+        boolean bumped = false;
+        ViewPayload view = new ViewPayload(since <= 0);
+        for (Map.Entry<String, JsonElement> section : sections.entrySet()) {
+            long fingerprint = fingerprint(section.getValue());
+            Observed last = shown.get(section.getKey());
+            if (last == null || last.fingerprint != fingerprint) {
+                // A change made outside of a versioned command still gets a version the client has not seen
+                if (!bumped) {
+                    game.nextVersion();
+                    bumped = true;
+                }
+                last = new Observed(fingerprint, game.getVersion());
+                shown.put(section.getKey(), last);
+            }
+            if (since <= 0 || last.version > since)
+                view.add(section.getKey(), section.getValue());
+        }
+        return view.withVersion(game.getVersion());
+    }
+
+    /**
+     * Forget the sections shown to a player, e.g. once the player has left
+     *
+     * @param name The name of the player
+     */
+    public void forget(String name) {
+        observed.remove(name);
+    }
+
+    private JsonObject game() {
+        JsonObject section = new JsonObject();
+        section.addProperty("id", game.getID());
+        section.addProperty("started", game.getStarted());
+        section.addProperty("day", game.getDay());
+        section.addProperty("nights", game.getNights());
+        section.addProperty("numberOfPlayers", game.getNumberOfPlayers());
+        return section;
+    }
+
+    private JsonArray players() {
+        JsonArray section = new JsonArray();
+        for (Player player : game.getPlayers()) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("name", player.getName());
+            entry.addProperty("ready", player.readyToSleep);
+            entry.addProperty("dead", player.isDead());
+            section.add(entry);
+        }
+        return section;
+    }
+
+    private JsonObject self(Player player) {
+        JsonObject section = new JsonObject();
+        section.addProperty("name", player.getName());
+        section.addProperty("dead", player.isDead());
+        if (player.roleA != null)
+            section.addProperty("active", player.roleA.name.name());
+        if (player.roleP != null)
+            section.addProperty("passive", player.roleP.name.name());
+        return section;
+    }
+
+    private JsonArray chats(Player player) {
+        JsonArray section = new JsonArray();
+        for (Chat chat : game.getChats().values()) {
+            if (!canSee(player, chat.getType() == Chat.Type.WEREWOLVES, chat.getType() == Chat.Type.VAMPIRES))
+                continue;
+            JsonObject entry = new JsonObject();
+            entry.addProperty("id", chat.getId().toString());
+            entry.addProperty("type", chat.getType().getValue());
+            entry.addProperty("cycle", chat.getCycle());
+            entry.addProperty("seq", chat.getLastSeq());
+            section.add(entry);
+        }
+        return sorted(section);
+    }
+
+    private JsonArray votes(Player player) {
+        JsonArray section = new JsonArray();
+        for (Vote vote : game.getVotes().values()) {
+            if (!canSee(player, vote.getType() == Vote.Type.WEREWOLVES, vote.getType() == Vote.Type.VAMPIRES))
+                continue;
+            JsonObject entry = new JsonObject();
+            entry.addProperty("id", vote.getId().toString());
+            entry.addProperty("type", vote.getType().getValue());
+            entry.addProperty("cycle", vote.getCycle());
+            entry.addProperty("closed", vote.isClosed());
+            JsonObject ballot = new JsonObject();
+            vote.getBallotCounts().forEach(ballot::addProperty);
+            entry.add("ballot", ballot);
+            section.add(entry);
+        }
+        return sorted(section);
+    }
+
+    private static boolean canSee(Player player, boolean wolvesOnly, boolean vampiresOnly) {
+        if (wolvesOnly)
+            return player != null && player.roleA != null && player.isWolf();
+        if (vampiresOnly)
+            return player != null && player.roleA != null && player.isVamp();
+        return true;
+    }
+
+    /**
+     * Chats and votes are kept in hash maps, so they are sorted by cycle and ID to keep the fingerprint stable
+     */
+    private static JsonArray sorted(JsonArray entries) {
+        List<JsonElement> list = new ArrayList<>();
+        entries.forEach(list::add);
+        list.sort(Comparator.<JsonElement>comparingInt(entry -> entry.getAsJsonObject().get("cycle").getAsInt())
+                .thenComparing(entry -> entry.getAsJsonObject().get("id").getAsString()));
+        JsonArray sorted = new JsonArray();
+        list.forEach(sorted::add);
+        return sorted;
+    }
+
+    private static long fingerprint(JsonElement section) {
+        byte[] bytes = section.toString().getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return ((long) Arrays.hashCode(bytes) << 32) | crc.getValue();
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.akarakoutev.werewolves.game;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timing wheel, shared by all games, which fires delayed phase transitions. Scheduling and cancelling a
+ * timeout are O(1), no matter how many timeouts are pending, and a single thread drives the whole wheel.
+ * <br>
+ * The tasks are run on the ticker thread, so they should only hand the work over, e.g. to a game's mailbox.
+ *
+ * @author Alberto Karakoutev
+ * @see GameManager#schedule(long, TimeUnit, GameMailbox.Action)
+ */
+public class PhaseTimer {
+
+    public static final Logger logger = Logger.getLogger(PhaseTimer.class.getName());
+
+    private static final PhaseTimer shared = new PhaseTimer(100, TimeUnit.MILLISECONDS, 512);
+
+    private final long tickNanos;
+    private final LinkedList<Timeout>[] wheel;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final long startTime;
+    private final Thread ticker;
+    private long tick = 0;
+
+    /**
+     * A handle of a scheduled task
+     */
+    public static class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Prevent the task from running
+         *
+         * @return Whether the task was still pending
+         */
+        public boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED))
+                return;
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.log(Level.SEVERE, "A phase timer task has failed", t);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    PhaseTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (Integer.bitCount(ticksPerWheel) != 1)
+            throw new IllegalArgumentException("The number of ticks per wheel must be a power of two!");
+
+        tickNanos = unit.toNanos(tickDuration);
+        wheel = new LinkedList[ticksPerWheel];
+        for (int i = 0; i < ticksPerWheel; i++) {
+            wheel[i] = new LinkedList<>();
+        }
+        mask = ticksPerWheel - 1;
+        startTime = System.nanoTime();
+
+        ticker = new Thread(this::run, "phase-timer");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Get the timer, shared by all games
+     *
+     * @return The shared timer
+     */
+    public static PhaseTimer getInstance() {
+        return shared;
+    }
+
+    /**
+     * Run a task once, after a given delay. The delay is rounded up to the tick duration.
+     *
+     * @param delay The delay
+     * @param unit  The unit of the delay
+     * @param task  The task to be run
+     * @return      The handle of the task
+     */
+    public Timeout schedule(long delay, TimeUnit unit, Runnable task) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay)));
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop the ticker thread. The pending timeouts never fire.
+     */
+    void stop() {
+        ticker.interrupt();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            waitForNextTick();
+            transferScheduled();
+            expireBucket(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        long sleepNanos;
+        while ((sleepNanos = deadline - (System.nanoTime() - startTime)) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.isCancelled())
+                continue;
+
+            long ticks = (timeout.deadline + tickNanos - 1) / tickNanos;
+            timeout.remainingRounds = Math.max(0, ticks - tick) / wheel.length;
+            wheel[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expireBucket(LinkedList<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.isCancelled()) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                it.remove();
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+}
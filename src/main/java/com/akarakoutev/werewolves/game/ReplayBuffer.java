@@ -0,0 +1,104 @@
+package com.akarakoutev.werewolves.game;
+
+import com.akarakoutev.werewolves.net.message.Frame;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * The latest frames sent to the topics of one game, kept so that a client, which has lost its connection, can ask for
+ * the frames it has missed instead of rebuilding its state. Every frame gets the next sequence number of the game,
+ * which is stamped into its envelope, so a client only needs to remember the last number it has seen.
+ * <br>
+ * The buffer is a ring of fixed capacity, so the oldest frames are dropped as new ones are sent. A client, which has
+ * been away for longer than the ring reaches back, has to resynchronize.
+ *
+ * @author Alberto Karakoutev
+ * @see GameManager#getReplayBuffer()
+ * @see com.akarakoutev.werewolves.net.broadcast.Broadcaster#send(String, String, com.akarakoutev.werewolves.net.message.Message, ReplayBuffer)
+ */
+public class ReplayBuffer {
+
+    /**
+     * The number of latest frames, kept by every game
+     */
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private final Entry[] ring;
+    private long lastSeq = 0;
+
+    private static class Entry {
+
+        final long seq;
+        final String destination;
+        final Frame frame;
+
+        Entry(long seq, String destination, Frame frame) {
+            this.seq = seq;
+            this.destination = destination;
+            this.frame = frame;
+        }
+    }
+
+    public ReplayBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ReplayBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The replay capacity must be positive!");
+        ring = new Entry[capacity];
+    }
+
+    /**
+     * Assign the next sequence number to a frame and keep the frame. The number is taken and the frame is stored
+     * atomically, so the frames are kept in sequence order even if they are sent from several threads.
+     *
+     * @param destination The broker destination of the frame
+     * @param encoder     Encodes the frame with the given sequence number
+     * @return            The encoded frame
+     */
+    public synchronized Frame record(String destination, LongFunction<Frame> encoder) {
+        long seq = lastSeq + 1;
+        Frame frame = encoder.apply(seq);
+        ring[slot(seq)] = new Entry(seq, destination, frame);
+        lastSeq = seq;
+        return frame;
+    }
+
+    /**
+     * @return The sequence number of the last frame, or 0 if nothing has been sent
+     */
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Get the frames, sent to some destinations after a sequence number
+     *
+     * @param since        The last sequence number, which the client has seen
+     * @param destinations The destinations, which the client is subscribed to
+     * @return             The missed frames in sequence order, or null if some of them are no longer kept
+     */
+    public synchronized List<Frame> replay(long since, Collection<String> destinations) {
+        long from = Math.max(since, 0) + 1;
+        long firstKept = Math.max(1, lastSeq - ring.length + 1);
+        if (from < firstKept)
+            return null;
+
+        List<Frame> frames = new ArrayList<>();
+        for (long seq = from; seq <= lastSeq; seq++) {
+            Entry entry = ring[slot(seq)];
+            if (destinations.contains(entry.destination))
+                frames.add(entry.frame);
+        }
+        return frames;
+    }
+
+    private int slot(long seq) {
+        return (int) ((seq - 1) % ring.length);
+    }
+
+}
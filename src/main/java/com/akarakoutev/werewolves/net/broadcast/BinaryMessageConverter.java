@@ -0,0 +1,45 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import com.akarakoutev.werewolves.net.message.BinaryJsonReader;
+import com.akarakoutev.werewolves.net.message.Message;
+import com.akarakoutev.werewolves.net.message.WireFormat;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+
+/**
+ * Reads the messages, which binary clients send with the <i>application/octet-stream</i> content type. Messages of any
+ * other content type are left to the default JSON converters.
+ *
+ * @author Alberto Karakoutev
+ * @see BinaryJsonReader
+ */
+public class BinaryMessageConverter extends AbstractMessageConverter {
+
+    public BinaryMessageConverter() {
+        super(WireFormat.BINARY.getContentType());
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Message.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canConvertTo(Object payload, MessageHeaders headers) {
+        return false;
+    }
+
+    @Override
+    protected Object convertFromInternal(org.springframework.messaging.Message<?> message, Class<?> targetClass, Object conversionHint) {
+        if (!(message.getPayload() instanceof byte[]))
+            return null;
+        try {
+            return BinaryJsonReader.readMessage((byte[]) message.getPayload());
+        } catch (RuntimeException e) {
+            throw new MessageConversionException(message, "Could not read the binary message", e);
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import com.akarakoutev.werewolves.game.GameMailbox;
+import com.akarakoutev.werewolves.game.ReplayBuffer;
+import com.akarakoutev.werewolves.net.message.Frame;
+import com.akarakoutev.werewolves.net.message.Message;
+import com.akarakoutev.werewolves.net.message.WireFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The single path by which the server pushes messages to the broker. A message is encoded into a Frame once and the
+ * same bytes are handed to the broker, which fans them out to all subscriber sessions of the destination without
+ * converting them again.
+ * <br>
+ * While any session uses the binary wire format, the frame is encoded in both forms. The frame travels to the broker
+ * in a header, so the WireFormatInterceptor can pick the binary or the compressed form for the sessions which asked
+ * for them.
+ * <br>
+ * Frames, which are sent by a game command, are held back until the command finishes. Consecutive frames of one
+ * command to the same destination are then joined into a single BATCH frame, so a night step, which notifies a player
+ * several times, costs one broker dispatch and one WebSocket write per subscriber instead of one per message. The
+ * batches are sent in the order of their frames, so the sequence numbers, which a game stamps on them, reach the
+ * broker in order, even when a command alternates between the public and a private destination.
+ *
+ * @author Alberto Karakoutev
+ * @see Frame
+ * @see WireFormatInterceptor
+ * @see GameMailbox.CommandScope
+ */
+@Component
+public class Broadcaster implements GameMailbox.CommandScope {
+
+    /**
+     * The content type of all frames. It is the same as the one of the plain strings, which were sent before.
+     */
+    public static final MimeType CONTENT_TYPE = WireFormat.JSON.getContentType();
+
+    /**
+     * The message header, which carries the frame itself to the outbound channel
+     */
+    static final String FRAME_HEADER = "werewolves.frame";
+
+    /**
+     * The maximum number of frames in one batch. A destination, which reaches it, is flushed before the command ends.
+     */
+    static final int MAX_BATCH_SIZE = 32;
+
+    private final SimpMessageSendingOperations sendingOperations;
+    private final WireFormatInterceptor wireFormats;
+
+    /**
+     * The frames held back by the command, which runs on the current thread, in the order they were sent
+     */
+    private final ThreadLocal<List<Batch>> batches = new ThreadLocal<>();
+
+    /**
+     * Consecutive frames to one destination
+     */
+    private static final class Batch {
+
+        final String destination;
+        final List<Frame> frames = new ArrayList<>();
+
+        Batch(String destination) {
+            this.destination = destination;
+        }
+    }
+
+    @Autowired
+    public Broadcaster(SimpMessageSendingOperations sendingOperations, WireFormatInterceptor wireFormats) {
+        this.sendingOperations = sendingOperations;
+        this.wireFormats = wireFormats;
+    }
+
+    @PostConstruct
+    public void register() {
+        GameMailbox.addScope(this);
+    }
+
+    @PreDestroy
+    public void unregister() {
+        GameMailbox.removeScope(this);
+    }
+
+    @Override
+    public void begin() {
+        batches.set(new ArrayList<>());
+    }
+
+    @Override
+    public void end() {
+        List<Batch> pending = batches.get();
+        batches.remove();
+        if (pending != null)
+            flush(pending);
+    }
+
+    /**
+     * Encode a message and send it to a destination
+     *
+     * @param destination The broker destination
+     * @param message     The message
+     */
+    public void send(String destination, Message message) {
+        send(destination, encode(message));
+    }
+
+    /**
+     * Stamp a message with the next sequence number of its game, keep it for replay under a topic and send it to a
+     * destination. The destination is the topic itself, or the session of the player, to whom the topic belongs.
+     *
+     * @param topic       The topic, under which the message is replayed
+     * @param destination The broker destination
+     * @param message     The message
+     * @param replay      The replay buffer of the game
+     * @see               ReplayBuffer
+     */
+    public void send(String topic, String destination, Message message, ReplayBuffer replay) {
+        send(destination, replay.record(topic, seq -> encode(message.withSeq(seq))));
+    }
+
+    /**
+     * Encode a message into a frame, in every wire format which is in use
+     *
+     * @param message The message
+     * @return        The frame
+     */
+    public Frame encode(Message message) {
+        return Frame.of(message, wireFormats.hasBinarySessions());
+    }
+
+    /**
+     * Send an already encoded frame to a destination, either a topic or a session destination. Inside a game command, the frame is sent when the command ends.
+     *
+     * @param destination The broker destination
+     * @param frame       The encoded message
+     */
+    public void send(String destination, Frame frame) {
+        List<Batch> pending = batches.get();
+        if (pending == null) {
+            publish(destination, frame);
+            return;
+        }
+
+        Batch last = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+        if (last == null || !last.destination.equals(destination)) {
+            last = new Batch(destination);
+            pending.add(last);
+        }
+        last.frames.add(frame);
+        // The earlier batches go first, so the frames stay in order
+        if (last.frames.size() >= MAX_BATCH_SIZE) {
+            flush(pending);
+            pending.clear();
+        }
+    }
+
+    private void flush(List<Batch> pending) {
+        for (Batch batch : pending) {
+            publish(batch.destination, batch.frames.size() == 1 ? batch.frames.get(0) : Frame.batch(batch.frames));
+        }
+    }
+
+    private void publish(String destination, Frame frame) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        // A session destination is resolved by its session ID, so the session needs no user principal
+        accessor.setSessionId(SessionRegistry.sessionOf(destination));
+        accessor.setContentType(CONTENT_TYPE);
+        accessor.setHeader(FRAME_HEADER, frame);
+        accessor.setLeaveMutable(true);
+        sendingOperations.send(destination, MessageBuilder.createMessage(frame.getPayload(), accessor.getMessageHeaders()));
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Creates the executors of the message channels from the <i>werewolves.channels.{channel}.*</i> properties, where the
+ * channel is <i>inbound</i>, <i>outbound</i> or <i>broker</i>:
+ * <ul>
+ *     <li><i>core-size</i> - The number of threads kept alive. 0 leaves the channel synchronous, which is the default
+ *     for the broker channel</li>
+ *     <li><i>max-size</i> - The number of threads, up to which the pool grows once the queue is full</li>
+ *     <li><i>queue-capacity</i> - The number of tasks, which may wait for a thread</li>
+ *     <li><i>keep-alive</i> - The seconds, for which a thread above the core size is kept idle</li>
+ *     <li><i>rejection</i> - What is done with a task, once the threads and the queue are full: <i>caller-runs</i>
+ *     runs it on the sending thread, which slows down the sender, <i>discard</i> drops it and <i>abort</i> fails the
+ *     send</li>
+ * </ul>
+ * The active threads, the pool size, the queue depth, the rejected tasks, and the time a task waits in the queue
+ * and runs are published as metrics, tagged with the channel.
+ *
+ * @author Alberto Karakoutev
+ * @see WebSocketMessageConfig
+ */
+@Component
+public class ChannelExecutors {
+
+    public static final Logger logger = Logger.getLogger(ChannelExecutors.class.getName());
+
+    public static final String INBOUND = "inbound";
+    public static final String OUTBOUND = "outbound";
+    public static final String BROKER = "broker";
+
+    private static final String PREFIX = "werewolves.channels.";
+
+    /**
+     * The default core size of the client channels, the same as the one Spring uses
+     */
+    private static final int DEFAULT_CORE_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final Environment environment;
+    private final MeterRegistry registry;
+
+    @Autowired
+    public ChannelExecutors(Environment environment, MeterRegistry registry) {
+        this.environment = environment;
+        this.registry = registry;
+    }
+
+    /**
+     * Create the executor of a channel
+     *
+     * @param channel The channel, e.g. {@link #INBOUND}
+     * @return        The executor, not yet initialized, or null if the channel is to stay synchronous
+     */
+    public ThreadPoolTaskExecutor create(String channel) {
+        int coreSize = property(channel, "core-size", BROKER.equals(channel) ? 0 : DEFAULT_CORE_SIZE);
+        if (coreSize <= 0)
+            return null;
+        int maxSize = Math.max(coreSize, property(channel, "max-size", coreSize * 2));
+        int queueCapacity = property(channel, "queue-capacity", 1000);
+        int keepAlive = property(channel, "keep-alive", 60);
+        String rejection = environment.getProperty(PREFIX + channel + ".rejection", "caller-runs");
+
+        Timer wait = Timer.builder("werewolves.channel.wait")
+                .description("Time a task waits in the queue of a channel executor")
+                .tag("channel", channel)
+                .register(registry);
+        Timer time = Timer.builder("werewolves.channel.time")
+                .description("Time a task runs on a channel executor")
+                .tag("channel", channel)
+                .register(registry);
+        Counter rejected = Counter.builder("werewolves.channel.rejected")
+                .description("Tasks rejected by a full channel executor")
+                .tag("channel", channel)
+                .tag("policy", rejection)
+                .register(registry);
+
+        MeteredExecutor executor = new MeteredExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setKeepAliveSeconds(keepAlive);
+        executor.setThreadNamePrefix(channel + "Channel-");
+        executor.setRejectedExecutionHandler(rejection(channel, rejection, rejected));
+        executor.setTaskDecorator(task -> {
+            long queued = System.nanoTime();
+            return () -> {
+                long started = System.nanoTime();
+                wait.record(started - queued, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } finally {
+                    time.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            };
+        });
+
+        Gauge.builder("werewolves.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Threads of a channel executor, which are running a task")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("werewolves.channel.threads", executor, ThreadPoolTaskExecutor::getPoolSize)
+                .description("Threads of a channel executor")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("werewolves.channel.queued", executor, MeteredExecutor::getQueueSize)
+                .description("Tasks waiting in the queue of a channel executor")
+                .tag("channel", channel)
+                .register(registry);
+
+        logger.info("The " + channel + " channel runs on " + coreSize + "-" + maxSize + " threads with a queue of "
+                + queueCapacity + ", " + rejection + " when full");
+        return executor;
+    }
+
+    private int property(String channel, String name, int defaultValue) {
+        return environment.getProperty(PREFIX + channel + "." + name, Integer.class, defaultValue);
+    }
+
+    private static RejectedExecutionHandler rejection(String channel, String policy, Counter rejected) {
+        RejectedExecutionHandler handler;
+        switch (policy.toLowerCase()) {
+            case "caller-runs":
+                handler = new ThreadPoolExecutor.CallerRunsPolicy();
+                break;
+            case "discard":
+                handler = new ThreadPoolExecutor.DiscardPolicy();
+                break;
+            case "abort":
+                handler = new ThreadPoolExecutor.AbortPolicy();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown rejection policy " + policy + " of the " + channel + " channel");
+        }
+        return (task, executor) -> {
+            rejected.increment();
+            handler.rejectedExecution(task, executor);
+        };
+    }
+
+    /**
+     * Keeps a reference to its queue, so the queue depth can be read before and after the pool is initialized
+     */
+    private static class MeteredExecutor extends ThreadPoolTaskExecutor {
+
+        private volatile BlockingQueue<Runnable> queue;
+
+        @Override
+        protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+            queue = super.createQueue(queueCapacity);
+            return queue;
+        }
+
+        int getQueueSize() {
+            BlockingQueue<Runnable> current = queue;
+            return current == null ? 0 : current.size();
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import com.akarakoutev.werewolves.net.mvc.BaseService;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Points the subscriptions to {@link GameDirectoryEmitter#DIRECTORY_TOPIC} at the directory topic of this server.
+ * <br>
+ * The snapshot at <i>/app/games</i> lists the games of the server, which holds the session, so the changes, which
+ * follow it, must come from the same server. In relay mode every server pushes to its own topic on the shared broker,
+ * and a client, which subscribes to <i>/topic/games</i>, receives the changes of its server only.
+ *
+ * @author Alberto Karakoutev
+ * @see GameDirectoryEmitter
+ */
+@Component
+public class DirectoryTopicInterceptor implements ChannelInterceptor {
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.SUBSCRIBE
+                || !GameDirectoryEmitter.DIRECTORY_TOPIC.equals(SimpMessageHeaderAccessor.getDestination(headers)))
+            return message;
+
+        String topic = GameDirectoryEmitter.topic(BaseService.getActiveGames().getNode());
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setDestination(topic);
+        accessor.setNativeHeader(StompHeaderAccessor.STOMP_DESTINATION_HEADER, topic);
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+
+/**
+ * Runs a STOMP broker inside the server process, for the relay mode in tests and on a single box. Several server
+ * instances on one machine can relay through the broker of the first one, so fan-out across instances can be tested
+ * without any external infrastructure.
+ * <br>
+ * Enabled with <i>werewolves.broker.mode=relay</i> and <i>werewolves.broker.embedded=true</i>. The broker keeps no
+ * journal and has no security, so it must only listen on a local or private interface.
+ *
+ * @author Alberto Karakoutev
+ * @see WebSocketMessageConfig.BrokerMode#RELAY
+ */
+@org.springframework.context.annotation.Configuration
+@ConditionalOnExpression("'${werewolves.broker.mode:simple}'.equalsIgnoreCase('relay') and ${werewolves.broker.embedded:false}")
+public class EmbeddedBrokerConfig {
+
+    public static final Logger logger = Logger.getLogger(EmbeddedBrokerConfig.class.getName());
+
+    @Value("${werewolves.broker.relay.host:localhost}")
+    private String host;
+
+    @Value("${werewolves.broker.relay.port:61613}")
+    private int port;
+
+    /**
+     * The broker is started while the context is created, before the relay connects to it on start-up
+     *
+     * @return The started broker
+     * @throws Exception If the broker can not be started, e.g. if the port is taken
+     */
+    @Bean(destroyMethod = "stop")
+    public EmbeddedActiveMQ embeddedBroker() throws Exception {
+        String dataDirectory = Paths.get("logs", "broker", String.valueOf(port)).toString();
+        Configuration configuration = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJMXManagementEnabled(false)
+                .setPagingDirectory(dataDirectory + "/paging")
+                .setBindingsDirectory(dataDirectory + "/bindings")
+                .setJournalDirectory(dataDirectory + "/journal")
+                .setLargeMessagesDirectory(dataDirectory + "/large-messages")
+                // The topics are multicast, so every connected server gets every message, while a session queue
+                // is consumed by the one server which holds the session
+                .addAcceptorConfiguration("stomp", "tcp://" + host + ":" + port
+                        + "?protocols=STOMP;multicastPrefix=" + WebSocketMessageConfig.TOPIC_PREFIX + "/"
+                        + ";anycastPrefix=" + SessionRegistry.QUEUE_PREFIX + "/");
+
+        EmbeddedActiveMQ broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        broker.start();
+        logger.info("Started the embedded STOMP broker on " + host + ":" + port);
+        return broker;
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The subscription registry of the in-process broker. Subscriptions are indexed by their exact destination, which
+ * already holds the game ID and, for private topics, the username, so finding the subscribers of a message is a single
+ * lookup and costs as much as the number of recipients, not the number of subscriptions on the server.
+ * <br>
+ * Destinations with wildcards are not used by the game clients. They are still accepted and kept in a
+ * DefaultSubscriptionRegistry, which is only searched while it holds any. Selector headers are not supported.
+ *
+ * @author Alberto Karakoutev
+ * @see WebSocketMessageConfig
+ */
+public class ExactSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    /**
+     * Subscription IDs by session ID, by destination
+     */
+    private final Map<String, Map<String, Set<String>>> byDestination = new ConcurrentHashMap<>();
+
+    /**
+     * Destinations by subscription ID, by session ID, to undo the subscriptions of a session
+     */
+    private final Map<String, Map<String, String>> bySession = new ConcurrentHashMap<>();
+
+    private final DefaultSubscriptionRegistry patterns = new DefaultSubscriptionRegistry();
+    private final Set<String> patternSessions = ConcurrentHashMap.newKeySet();
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination, Message<?> message) {
+        if (isPattern(destination)) {
+            patterns.registerSubscription(message);
+            patternSessions.add(sessionId);
+            return;
+        }
+        bySession.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(subscriptionId, destination);
+        // Added under the lock of the destination entry, so an unsubscribe can not drop the entry in between
+        byDestination.compute(destination, (key, sessions) -> {
+            if (sessions == null)
+                sessions = new ConcurrentHashMap<>();
+            sessions.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(subscriptionId);
+            return sessions;
+        });
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+        Map<String, String> subscriptions = bySession.get(sessionId);
+        String destination = subscriptions != null ? subscriptions.remove(subscriptionId) : null;
+        if (destination == null) {
+            if (patternSessions.contains(sessionId))
+                patterns.unregisterSubscription(message);
+            return;
+        }
+        unindex(destination, sessionId, subscriptionId);
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        Map<String, String> subscriptions = bySession.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.forEach((subscriptionId, destination) -> unindex(destination, sessionId, subscriptionId));
+        }
+        if (patternSessions.remove(sessionId))
+            patterns.unregisterAllSubscriptions(sessionId);
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        MultiValueMap<String, String> result = new LinkedMultiValueMap<>();
+        Map<String, Set<String>> sessions = byDestination.get(destination);
+        if (sessions != null) {
+            sessions.forEach((sessionId, subscriptionIds) -> {
+                for (String subscriptionId : subscriptionIds) {
+                    result.add(sessionId, subscriptionId);
+                }
+            });
+        }
+        if (!patternSessions.isEmpty()) {
+            patterns.findSubscriptions(message).forEach((sessionId, subscriptionIds) -> {
+                for (String subscriptionId : subscriptionIds) {
+                    result.add(sessionId, subscriptionId);
+                }
+            });
+        }
+        return result;
+    }
+
+    private void unindex(String destination, String sessionId, String subscriptionId) {
+        byDestination.computeIfPresent(destination, (key, sessions) -> {
+            sessions.computeIfPresent(sessionId, (id, subscriptionIds) -> {
+                subscriptionIds.remove(subscriptionId);
+                return subscriptionIds.isEmpty() ? null : subscriptionIds;
+            });
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    private static boolean isPattern(String destination) {
+        return destination.indexOf('*') >= 0 || destination.indexOf('?') >= 0 || destination.indexOf('{') >= 0;
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import com.akarakoutev.werewolves.net.message.Frame;
+import com.akarakoutev.werewolves.net.message.WireFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the frames for the sessions which asked for it with the <i>compression: deflate</i> header on a
+ * SUBSCRIBE frame. Only frames above a size threshold are compressed, since small frames are dominated by the
+ * deflate header and cost more CPU than they save on the wire. A frame is compressed at most once per wire format,
+ * however many sessions it is sent to.
+ * <br>
+ * The compression ratio, the CPU time and the saved bytes are published as metrics.
+ *
+ * @author Alberto Karakoutev
+ * @see WireFormatInterceptor
+ * @see Frame#getDeflated(WireFormat, java.util.function.UnaryOperator)
+ */
+@Component
+public class FrameCompressor {
+
+    /**
+     * The STOMP header of the SUBSCRIBE frame, by which a client asks for compression
+     */
+    public static final String HEADER = "compression";
+
+    /**
+     * The only supported compression, which is also the value of the <i>content-encoding</i> header of a compressed
+     * frame
+     */
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * The frames up to this size are sent as they are
+     */
+    @Value("${werewolves.compression.threshold:1024}")
+    private int threshold;
+
+    /**
+     * The deflate level, from 1 (fastest) to 9 (smallest)
+     */
+    @Value("${werewolves.compression.level:6}")
+    private int level;
+
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[8 * 1024]);
+
+    private final DistributionSummary ratio;
+    private final Timer time;
+    private final Counter savedBytes;
+    private final Counter skipped;
+
+    @Autowired
+    public FrameCompressor(MeterRegistry registry) {
+        ratio = DistributionSummary.builder("werewolves.frames.compression.ratio")
+                .description("Compressed size divided by the original size of a compressed frame")
+                .publishPercentiles(0.5, 0.95)
+                .register(registry);
+        time = Timer.builder("werewolves.frames.compression.time")
+                .description("CPU time spent compressing one frame")
+                .register(registry);
+        savedBytes = Counter.builder("werewolves.frames.compression.saved")
+                .description("Bytes saved by compressing frames")
+                .baseUnit("bytes")
+                .register(registry);
+        skipped = Counter.builder("werewolves.frames.compression.skipped")
+                .description("Frames of compressing sessions, sent uncompressed because they were too small")
+                .register(registry);
+    }
+
+    /**
+     * Get the compressed form of a frame
+     *
+     * @param frame  The frame
+     * @param format The wire format of the receiving session
+     * @return       The raw deflate bytes, or null if the frame is sent uncompressed
+     */
+    public byte[] compress(Frame frame, WireFormat format) {
+        byte[] original = format == WireFormat.BINARY ? frame.getBinary() : frame.getPayload();
+        if (original == null || original.length <= threshold) {
+            skipped.increment();
+            return null;
+        }
+        return frame.getDeflated(format, this::deflate);
+    }
+
+    private byte[] deflate(byte[] original) {
+        long start = System.nanoTime();
+        Deflater deflater = deflaters.get();
+        byte[] buffer = buffers.get();
+        byte[] compressed;
+        try {
+            deflater.setInput(original);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    buffers.set(buffer);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            compressed = Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.reset();
+        }
+        time.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (compressed.length >= original.length)
+            return null;
+        ratio.record((double) compressed.length / original.length);
+        savedBytes.increment(original.length - compressed.length);
+        return compressed;
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import com.akarakoutev.werewolves.game.GameDirectory;
+import com.akarakoutev.werewolves.net.message.MessageType;
+import com.akarakoutev.werewolves.net.message.MessageUtil;
+import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.message.payload.DirectoryPayload;
+import com.akarakoutev.werewolves.net.mvc.BaseService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Controller;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.logging.Logger;
+
+/**
+ * Pushes the game directory to the lobby browsers, so they do not have to poll <i>/base/game/all</i>. A client
+ * subscribes to {@link #DIRECTORY_TOPIC} for the changes and then to <i>/app/games</i>, which answers that one
+ * subscription with a snapshot of the whole directory.
+ * <br>
+ * The changes are collected per game and pushed every <i>werewolves.directory.interval</i> milliseconds, so a game,
+ * which changes several times in between, e.g. while its lobby fills up, is pushed once with its latest state. A push
+ * only carries the games, which have changed, so an idle subscriber costs nothing between changes.
+ * <br>
+ * Every game is stamped with the revision of its latest change. A client keeps the highest revision per game and
+ * ignores anything older, which makes a change, that arrives after a newer snapshot, harmless.
+ * <br>
+ * The changes are pushed to the topic of this server, to which the DirectoryTopicInterceptor points the
+ * subscriptions, so the snapshot and the changes, which a client receives, always cover the same games.
+ *
+ * @author Alberto Karakoutev
+ * @see GameDirectory.Listener
+ * @see DirectoryPayload
+ * @see DirectoryTopicInterceptor
+ */
+@Controller
+public class GameDirectoryEmitter implements GameDirectory.Listener {
+
+    public static final Logger logger = Logger.getLogger(GameDirectoryEmitter.class.getName());
+
+    /**
+     * The topic, to which clients subscribe for the directory changes
+     */
+    public static final String DIRECTORY_TOPIC = WebSocketMessageConfig.TOPIC_PREFIX + "/games";
+
+    @Value("${werewolves.directory.interval:500}")
+    private long intervalMillis;
+
+    private final Broadcaster broadcaster;
+    private final TaskScheduler scheduler;
+    private final GameDirectory directory = BaseService.getActiveGames().getDirectory();
+
+    /**
+     * The latest change of every game since the last push, by game ID
+     */
+    private final Map<String, Change> pending = new ConcurrentHashMap<>();
+
+    private ScheduledFuture<?> task;
+
+    private static final class Change {
+
+        final GameDirectory.Entry entry;
+        final long revision;
+
+        Change(GameDirectory.Entry entry, long revision) {
+            this.entry = entry;
+            this.revision = revision;
+        }
+
+        static Change latest(Change a, Change b) {
+            return b.revision >= a.revision ? b : a;
+        }
+    }
+
+    @Autowired
+    public GameDirectoryEmitter(Broadcaster broadcaster, @Qualifier("messageBrokerTaskScheduler") TaskScheduler scheduler) {
+        this.broadcaster = broadcaster;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Get the topic, to which a server pushes the changes of its directory
+     *
+     * @param node The node ID of the server
+     * @return     The destination of the topic
+     */
+    public static String topic(String node) {
+        return DIRECTORY_TOPIC + "/" + node;
+    }
+
+    @PostConstruct
+    public void start() {
+        directory.addListener(this);
+        task = scheduler.scheduleWithFixedDelay(this::flush, Duration.ofMillis(intervalMillis));
+    }
+
+    @PreDestroy
+    public void stop() {
+        directory.removeListener(this);
+        if (task != null)
+            task.cancel(false);
+    }
+
+    @Override
+    public void changed(String gameId, GameDirectory.Entry entry, long revision) {
+        pending.merge(gameId, new Change(entry, revision), Change::latest);
+    }
+
+    /**
+     * Answer a subscription to <i>/app/games</i> with a snapshot of the directory
+     *
+     * @return The serialized <u>DIRECTORY</u> message
+     */
+    @SubscribeMapping("/games")
+    public String snapshot() {
+        DirectoryPayload payload = new DirectoryPayload(directory.getVersion(), true);
+        for (GameDirectory.Entry game : directory.list(false, 0, 0, Integer.MAX_VALUE)) {
+            payload.add(game);
+        }
+        return MessageUtil.serialize(new ServerMessage(payload, MessageType.DIRECTORY));
+    }
+
+    /**
+     * Push the changes since the last push to the directory topic of this server
+     */
+    public void flush() {
+        if (pending.isEmpty())
+            return;
+
+        DirectoryPayload payload = new DirectoryPayload(directory.getVersion(), false);
+        for (String gameId : pending.keySet()) {
+            Change change = pending.remove(gameId);
+            if (change == null)
+                continue;
+            if (change.entry == null) {
+                payload.remove(gameId, change.revision);
+            } else {
+                payload.add(change.entry);
+            }
+        }
+        if (payload.isEmpty())
+            return;
+
+        try {
+            broadcaster.send(topic(BaseService.getActiveGames().getNode()), new ServerMessage(payload, MessageType.DIRECTORY));
+        } catch (Exception e) {
+            logger.warning("Could not push the directory changes: " + e.getMessage());
+        }
+    }
+
+}
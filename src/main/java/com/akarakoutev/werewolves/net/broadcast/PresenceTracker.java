@@ -0,0 +1,120 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import com.akarakoutev.werewolves.game.GameManager;
+import com.akarakoutev.werewolves.game.PhaseTimer;
+import com.akarakoutev.werewolves.net.message.MessageType;
+import com.akarakoutev.werewolves.net.message.MessageUtil;
+import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.message.payload.PlayersPayload;
+import com.akarakoutev.werewolves.net.mvc.BaseService;
+import com.akarakoutev.werewolves.net.mvc.GameService;
+import com.akarakoutev.werewolves.player.Player;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Removes the players, whose session has ended and who have not come back. When a session ends, either because the
+ * client has closed it or because its heartbeats have stopped, each player bound to it is given a grace period to
+ * reconnect. If the player is still not bound to a session when the grace period is over, the player is logged out,
+ * the same way as if it had logged out itself.
+ * <br>
+ * The players of an ended session are found through the SessionRegistry and the grace periods run on the PhaseTimer,
+ * so handling a dropped session costs the same, no matter how many games there are.
+ *
+ * @author Alberto Karakoutev
+ * @see SessionRegistry#release(String)
+ * @see WebSocketEventListener
+ */
+@Component
+public class PresenceTracker {
+
+    public static final Logger logger = Logger.getLogger(PresenceTracker.class.getName());
+
+    /**
+     * The time, given to a dropped player to reconnect, before it is logged out
+     */
+    @Value("${werewolves.presence.grace:15}")
+    private long graceSeconds;
+
+    private final SessionRegistry sessionRegistry;
+    private final GameService gameService;
+
+    /**
+     * The pending grace periods, by player
+     */
+    private final Map<SessionRegistry.Binding, PhaseTimer.Timeout> dropped = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PresenceTracker(SessionRegistry sessionRegistry, GameService gameService) {
+        this.sessionRegistry = sessionRegistry;
+        this.gameService = gameService;
+    }
+
+    /**
+     * Start the grace period of every player, which was bound to an ended session
+     *
+     * @param sessionId The WebSocket session ID
+     * @return          The players, whose grace period has started
+     */
+    public List<SessionRegistry.Binding> sessionEnded(String sessionId) {
+        List<SessionRegistry.Binding> players = sessionRegistry.release(sessionId);
+        for (SessionRegistry.Binding player : players) {
+            GameManager gameManager = BaseService.getActiveGames().get(player.getGameId());
+            if (gameManager == null)
+                continue;
+
+            logger.info("Player " + player.getUsername() + " of game " + player.getGameId() + " has dropped, waiting "
+                    + graceSeconds + "s for a reconnect");
+            PhaseTimer.Timeout timeout = gameManager.schedule(graceSeconds, TimeUnit.SECONDS, () -> expire(gameManager, player));
+            PhaseTimer.Timeout previous = dropped.put(player, timeout);
+            if (previous != null)
+                previous.cancel();
+        }
+        return players;
+    }
+
+    /**
+     * @param gameId   The game ID for the target game
+     * @param username The name of the player
+     * @return         Whether the player has dropped and its grace period is still running
+     */
+    public boolean isDropped(String gameId, String username) {
+        PhaseTimer.Timeout timeout = dropped.get(new SessionRegistry.Binding(gameId, username));
+        return timeout != null && !timeout.isExpired() && !timeout.isCancelled()
+                && sessionRegistry.getSessionId(gameId, username) == null;
+    }
+
+    private void expire(GameManager gameManager, SessionRegistry.Binding player) {
+        dropped.remove(player);
+        String gameId = player.getGameId();
+        // The player has reconnected, has logged out, or the game is over
+        Optional<Player> removed = gameManager.getGame().getPlayers().stream()
+                .filter(p -> player.getUsername().equals(p.getName()))
+                .findFirst();
+        if (sessionRegistry.getSessionId(gameId, player.getUsername()) != null || removed.isEmpty()
+                || BaseService.getActiveGames().get(gameId) != gameManager)
+            return;
+
+        gameManager.removePlayer(removed.get());
+        logger.info("Logged out player " + player.getUsername() + " of game " + gameId + ", who has not reconnected");
+
+        if (gameManager.getGame().getStarted()) {
+            gameService.sendToGame(gameId, null, new ServerMessage(MessageUtil.toContent("player", player.getUsername()), MessageType.DISCONNECT));
+        } else {
+            PlayersPayload playerList = new PlayersPayload();
+            for (Player remaining : gameManager.getGame().getPlayers()) {
+                playerList.add(remaining.getName(), remaining.readyToSleep);
+            }
+            gameService.sendToLobby(gameId, null, new ServerMessage(playerList, MessageType.DISCONNECT));
+        }
+    }
+
+}
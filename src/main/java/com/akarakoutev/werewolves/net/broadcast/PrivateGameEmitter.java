@@ -1,7 +1,13 @@
 package com.akarakoutev.werewolves.net.broadcast;
 
+import com.akarakoutev.werewolves.net.exc.ExceptionUtil;
+import com.akarakoutev.werewolves.net.exc.PlayerNotFoundException;
 import com.akarakoutev.werewolves.net.message.Message;
+import com.akarakoutev.werewolves.net.message.MessageType;
+import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.message.payload.ViewPayload;
 import com.akarakoutev.werewolves.net.mvc.GameService;
+import com.google.gson.JsonElement;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -9,6 +15,7 @@ import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @Controller
@@ -16,13 +23,110 @@ public class PrivateGameEmitter {
 
     public static final Logger logger = Logger.getLogger(PrivateGameEmitter.class.getName());
 
+    private final GameService gameService;
+    private final Broadcaster broadcaster;
+    private final SessionRegistry sessionRegistry;
+
     @Autowired
-    public PrivateGameEmitter() {}
+    public PrivateGameEmitter(GameService gameService, Broadcaster broadcaster, SessionRegistry sessionRegistry) {
+        this.gameService = gameService;
+        this.broadcaster = broadcaster;
+        this.sessionRegistry = sessionRegistry;
+    }
 
+    /**
+     * Bind the session of the caller to a player, so the player's private messages are sent to it
+     *
+     * @param message The message, whose content holds <i>token</i>, the token the player was given on login, and may
+     *                hold <i>spriteWidth</i>
+     * @param gameId  The game ID for the target game
+     * @see           GameService#bindSession(String, String, String, String)
+     */
     @MessageMapping("/game/subscribe/{gameId}/{username}")
-    public void gameSubscribePrivate(@Payload final Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+    public void gameSubscribePrivate(@Payload final Message message, @DestinationVariable String gameId, @DestinationVariable String username, SimpMessageHeaderAccessor headerAccessor) {
+        if (!username.equals(message.getSender()) || !gameService.bindSession(gameId, username, token(message), headerAccessor.getSessionId())) {
+            logger.warning("Refused the private subscription of " + message.getSender() + " to the game " + gameId + " as " + username);
+            return;
+        }
         headerAccessor.getSessionAttributes().put("private:username", message.getSender());
         logger.info("User " + message.getSender() + " has subscribed to the private channel of the game " + gameId + "!");
+
+        JsonElement content = message.getContent();
+        if (content != null && content.isJsonObject() && content.getAsJsonObject().has("spriteWidth")) {
+            try {
+                gameService.setSpriteWidth(gameId, message.getSender(), content.getAsJsonObject().get("spriteWidth").getAsInt());
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Could not set the sprite width of " + message.getSender(), e);
+            }
+        }
+    }
+
+    /**
+     * Send a reconnected player the messages it has missed, to its session. Only the session, to which the player is
+     * bound, may resume it.
+     *
+     * @param message The message, whose content holds <i>since</i>, the last sequence number the player has seen
+     * @param gameId  The game ID for the target game
+     * @see           GameService#getReplay(String, String, long, boolean)
+     */
+    @MessageMapping("/game/resume/{gameId}")
+    public void gameResume(@Payload final Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+        String destination = SessionRegistry.getSessionDestination(headerAccessor.getSessionId(), SessionRegistry.GAME_QUEUE);
+        try {
+            requireBound(gameId, message.getSender(), headerAccessor.getSessionId());
+            long since = since(message);
+            broadcaster.send(destination, gameService.getReplay(gameId, message.getSender(), since, true));
+            logger.info("User " + message.getSender() + " has resumed the game " + gameId + " after " + since + "!");
+        } catch (Exception e) {
+            ServerMessage errorMessage = new ServerMessage(ExceptionUtil.errorResponseJson(e), MessageType.ERROR);
+            broadcaster.send(destination, errorMessage);
+        }
+    }
+
+    /**
+     * Send a player the part of the game it may see, to its session. Only the session, to which the player is bound,
+     * may see it.
+     *
+     * @param message The message, whose content may hold <i>since</i>, the version of the player's last view
+     * @param gameId  The game ID for the target game
+     * @see           GameService#getView(String, String, long, boolean)
+     */
+    @MessageMapping("/game/view/{gameId}")
+    public void gameView(@Payload final Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+        String destination = SessionRegistry.getSessionDestination(headerAccessor.getSessionId(), SessionRegistry.GAME_QUEUE);
+        try {
+            requireBound(gameId, message.getSender(), headerAccessor.getSessionId());
+            ViewPayload view = gameService.getView(gameId, message.getSender(), since(message), true);
+            broadcaster.send(destination, new ServerMessage(view, MessageType.VIEW));
+        } catch (Exception e) {
+            ServerMessage errorMessage = new ServerMessage(ExceptionUtil.errorResponseJson(e), MessageType.ERROR);
+            broadcaster.send(destination, errorMessage);
+        }
+    }
+
+    private void requireBound(String gameId, String username, String sessionId) throws PlayerNotFoundException {
+        if (!sessionRegistry.isBound(gameId, username, sessionId))
+            throw new PlayerNotFoundException("Player " + username + " is not bound to this session!");
+    }
+
+    /**
+     * Read the login token of the sender
+     *
+     * @param message The private subscribe message
+     * @return        The token, or null if the message has none
+     */
+    static String token(Message message) {
+        JsonElement content = message.getContent();
+        if (content != null && content.isJsonObject() && content.getAsJsonObject().has("token"))
+            return content.getAsJsonObject().get("token").getAsString();
+        return null;
+    }
+
+    private static long since(Message message) {
+        JsonElement content = message.getContent();
+        if (content != null && content.isJsonObject() && content.getAsJsonObject().has("since"))
+            return content.getAsJsonObject().get("since").getAsLong();
+        return 0;
     }
 
 }
@@ -1,6 +1,8 @@
 package com.akarakoutev.werewolves.net.broadcast;
 
 import com.akarakoutev.werewolves.net.message.Message;
+import com.akarakoutev.werewolves.net.mvc.GameService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -14,8 +16,26 @@ public class PrivateLobbyEmitter {
 
 	public static final Logger logger = Logger.getLogger(PrivateLobbyEmitter.class.getName());
 
+	private final GameService gameService;
+
+	@Autowired
+	public PrivateLobbyEmitter(GameService gameService) {
+		this.gameService = gameService;
+	}
+
+	/**
+	 * Bind the session of the caller to a player, so the player's private messages are sent to it
+	 *
+	 * @param message The message, whose content holds <i>token</i>, the token the player was given on login
+	 * @param gameId  The game ID for the target game
+	 * @see           GameService#bindSession(String, String, String, String)
+	 */
 	@MessageMapping("/lobby/subscribe/{gameId}/{username}")
-	public void lobbySubscribePrivate(@Payload final Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+	public void lobbySubscribePrivate(@Payload final Message message, @DestinationVariable String gameId, @DestinationVariable String username, SimpMessageHeaderAccessor headerAccessor) {
+		if (!username.equals(message.getSender()) || !gameService.bindSession(gameId, username, PrivateGameEmitter.token(message), headerAccessor.getSessionId())) {
+			logger.warning("Refused the private subscription of " + message.getSender() + " to the lobby " + gameId + " as " + username);
+			return;
+		}
 		headerAccessor.getSessionAttributes().put("private:username", message.getSender());
 		logger.info("User " + message.getSender() + " has subscribed to the private channel of the lobby " + gameId + "!");
 	}
@@ -15,7 +15,6 @@ import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.stereotype.Controller;
 
 import com.akarakoutev.werewolves.net.mvc.GameService;
@@ -31,7 +30,10 @@ public class PublicGameEmitter {
     public static final Logger logger = Logger.getLogger(PublicGameEmitter.class.getName());
 
     @Autowired
-    private SimpMessageSendingOperations sendingOperations;
+    private GameService gameService;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
 
     @MessageMapping("/game/subscribe/{gameId}")
     public void gameSubscribePublic(@Payload final Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
@@ -43,17 +45,22 @@ public class PublicGameEmitter {
 
     @MessageMapping("/game/users/logout/{gameId}")
     public void gameLogout(@Payload final Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+        if (!sessionRegistry.isBound(gameId, message.getSender(), headerAccessor.getSessionId())) {
+            logger.warning("Refused the logout of " + message.getSender() + " from the game " + gameId + " by another session");
+            return;
+        }
         try {
             baseService.logout(gameId, message.getSender());
             headerAccessor.getSessionAttributes().remove("public:username", message.getSender());
             headerAccessor.getSessionAttributes().remove("private:username", message.getSender());
+            sessionRegistry.unregister(gameId, message.getSender(), headerAccessor.getSessionId());
             JsonObject content = MessageUtil.toContent("player", message.getSender());
             ServerMessage dcMessage = new ServerMessage(content, MessageType.DISCONNECT);
 
-            sendingOperations.convertAndSend("/topic/game/"+gameId, MessageUtil.serialize(dcMessage));
+            gameService.sendToGame(gameId, null, dcMessage);
         } catch (Exception e) {
             ServerMessage errorMessage = new ServerMessage(ExceptionUtil.errorResponseJson(e), MessageType.ERROR);
-            sendingOperations.convertAndSend("/topic/game/"+gameId+"/"+message.getSender(), MessageUtil.serialize(errorMessage));
+            gameService.sendToGame(gameId, message.getSender(), errorMessage);
         }
     }
 
@@ -3,17 +3,16 @@ package com.akarakoutev.werewolves.net.broadcast;
 import com.akarakoutev.werewolves.net.exc.ExceptionUtil;
 import com.akarakoutev.werewolves.net.message.Message;
 import com.akarakoutev.werewolves.net.message.MessageType;
-import com.akarakoutev.werewolves.net.message.MessageUtil;
 import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.message.payload.PlayersPayload;
 import com.akarakoutev.werewolves.net.mvc.BaseService;
+import com.akarakoutev.werewolves.net.mvc.GameService;
 import com.akarakoutev.werewolves.player.PlayerManager;
-import com.google.gson.JsonArray;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.stereotype.Controller;
 
 import java.util.logging.Logger;
@@ -25,7 +24,10 @@ public class PublicLobbyEmitter {
 	public static final Logger logger = Logger.getLogger(PlayerManager.class.getName());
 
 	@Autowired
-	private SimpMessageSendingOperations sendingOperations;
+	private GameService gameService;
+
+	@Autowired
+	private SessionRegistry sessionRegistry;
 
 	@Autowired
 	public PublicLobbyEmitter(BaseService baseService) {
@@ -36,31 +38,36 @@ public class PublicLobbyEmitter {
 	public void lobbySubscribePublic(@Payload final Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
 		try {
 			logger.info("User " + message.getSender() + " has subscribed to the public channel of the lobby " + gameId+ "!");
-			JsonArray playerList = baseService.getAllPlayers(gameId);
+			PlayersPayload playerList = baseService.getAllPlayers(gameId);
 			headerAccessor.getSessionAttributes().put("public:username", message.getSender());
 			ServerMessage successMessage = new ServerMessage(playerList, MessageType.CONNECT);
 
-			sendingOperations.convertAndSend("/topic/lobby/"+gameId, MessageUtil.serialize(successMessage));
+			gameService.sendToLobby(gameId, null, successMessage);
 		} catch (Exception e) {
 			ServerMessage errorMessage = new ServerMessage(ExceptionUtil.errorResponseJson(e), MessageType.ERROR);
-			sendingOperations.convertAndSend("/topic/lobby/"+gameId+"/"+message.getSender(), MessageUtil.serialize(errorMessage));
+			gameService.sendToLobby(gameId, message.getSender(), errorMessage);
 		}
 	}
 
 	@MessageMapping("/lobby/logout/{gameId}")
 	public void lobbyLogout(@Payload final Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+		if (!sessionRegistry.isBound(gameId, message.getSender(), headerAccessor.getSessionId())) {
+			logger.warning("Refused the logout of " + message.getSender() + " from the lobby " + gameId + " by another session");
+			return;
+		}
 		try {
 			baseService.logout(gameId, message.getSender());
 			headerAccessor.getSessionAttributes().remove("public:username", message.getSender());
 			headerAccessor.getSessionAttributes().remove("private:username", message.getSender());
-			JsonArray playerList = baseService.getAllPlayers(gameId);
+			sessionRegistry.unregister(gameId, message.getSender(), headerAccessor.getSessionId());
+			PlayersPayload playerList = baseService.getAllPlayers(gameId);
 			ServerMessage successMessage = new ServerMessage(playerList, MessageType.DISCONNECT);
 
-			sendingOperations.convertAndSend("/topic/lobby/"+gameId, MessageUtil.serialize(successMessage));
+			gameService.sendToLobby(gameId, null, successMessage);
 		} catch (Exception e) {
 			e.printStackTrace();
 			ServerMessage errorMessage = new ServerMessage(ExceptionUtil.errorResponseJson(e), MessageType.ERROR);
-			sendingOperations.convertAndSend("/topic/lobby/"+gameId+"/"+message.getSender(), MessageUtil.serialize(errorMessage));
+			gameService.sendToLobby(gameId, message.getSender(), errorMessage);
 		}
 	}
 
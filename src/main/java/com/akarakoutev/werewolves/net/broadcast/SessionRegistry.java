@@ -0,0 +1,283 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Maps every player to the WebSocket session, through which it is connected, so private messages go straight to that
+ * session instead of through a per-username topic, which any client could subscribe to.
+ * <br>
+ * A client subscribes to <i>/user/queue/game</i> and <i>/user/queue/lobby</i> before it sends its private subscribe
+ * message. The private messages for it are then sent to <i>/user/{sessionId}/queue/...</i>, which the broker delivers
+ * to that one session. A player, which is not bound to a session subscribed to the queue, receives no private
+ * messages, but they are kept for replay, so it gets them once it is bound and resumes.
+ * <br>
+ * A player is bound to the first session, which claims it, until that session ends or the player unbinds itself. A
+ * claim of the same player from another session is refused, so no connection can take over another's private queue.
+ * Only the private subscribe, which carries the token the player was given on login, claims a player, so a session
+ * can not claim a name it has not logged in with.
+ * <br>
+ * The registry is also the index of who is connected: when a session ends, its players are found without scanning
+ * the games.
+ *
+ * @author Alberto Karakoutev
+ * @see PrivateGameEmitter
+ * @see PrivateLobbyEmitter
+ * @see PresenceTracker
+ */
+@Component
+public class SessionRegistry implements ChannelInterceptor {
+
+    public static final Logger logger = Logger.getLogger(SessionRegistry.class.getName());
+
+    /**
+     * The prefix of the destinations, which are delivered to a single session
+     */
+    public static final String USER_PREFIX = "/user";
+
+    /**
+     * The broker prefix of the per-session queues
+     */
+    public static final String QUEUE_PREFIX = "/queue";
+
+    /**
+     * The queue for private game messages
+     */
+    public static final String GAME_QUEUE = QUEUE_PREFIX + "/game";
+
+    /**
+     * The queue for private lobby messages
+     */
+    public static final String LOBBY_QUEUE = QUEUE_PREFIX + "/lobby";
+
+    /**
+     * The queue for the results of the actions, which a session has sent
+     */
+    public static final String RESULT_QUEUE = QUEUE_PREFIX + "/result";
+
+    /**
+     * The session of every registered player
+     */
+    private final Map<Binding, String> players = new ConcurrentHashMap<>();
+
+    /**
+     * The players and the queue subscriptions of every session
+     */
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private static class Session {
+        final Set<Binding> players = ConcurrentHashMap.newKeySet();
+        final Map<String, String> queues = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * A player of a game, bound to a session
+     */
+    public static final class Binding {
+
+        private final String gameId;
+        private final String username;
+
+        public Binding(String gameId, String username) {
+            this.gameId = gameId;
+            this.username = username;
+        }
+
+        public String getGameId() {
+            return gameId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Binding))
+                return false;
+            Binding binding = (Binding) o;
+            return gameId.equals(binding.gameId) && username.equals(binding.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * gameId.hashCode() + username.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return gameId + "/" + username;
+        }
+    }
+
+    /**
+     * Bind a player to a session. A player, which is still bound to another session, is not rebound. After its session
+     * has ended, e.g. when the player reconnects, the player can be bound to the new one.
+     *
+     * @param gameId    The game ID for the target game
+     * @param username  The name of the player
+     * @param sessionId The WebSocket session ID
+     * @return          Whether the player is now bound to the session
+     */
+    public boolean register(String gameId, String username, String sessionId) {
+        if (gameId == null || username == null || sessionId == null)
+            return false;
+        Binding player = new Binding(gameId, username);
+        Session session = session(sessionId);
+        String bound = players.compute(player, (key, current) -> current == null || !sessions.containsKey(current) ? sessionId : current);
+        if (!sessionId.equals(bound)) {
+            logger.warning("Refused to bind " + player + " to session " + sessionId + ", it is bound to another session");
+            return false;
+        }
+        session.players.add(player);
+        return true;
+    }
+
+    /**
+     * Unbind a player from its session, e.g. when it logs out. Only the session, to which the player is bound, can
+     * unbind it.
+     *
+     * @param gameId    The game ID for the target game
+     * @param username  The name of the player
+     * @param sessionId The WebSocket session ID of the caller
+     */
+    public void unregister(String gameId, String username, String sessionId) {
+        if (gameId == null || username == null || sessionId == null)
+            return;
+        Binding player = new Binding(gameId, username);
+        if (!players.remove(player, sessionId))
+            return;
+        Session session = sessions.get(sessionId);
+        if (session != null)
+            session.players.remove(player);
+    }
+
+    /**
+     * @param gameId    The game ID for the target game
+     * @param username  The name of the player
+     * @param sessionId The WebSocket session ID
+     * @return          Whether the player is bound to the session
+     */
+    public boolean isBound(String gameId, String username, String sessionId) {
+        return sessionId != null && sessionId.equals(getSessionId(gameId, username));
+    }
+
+    /**
+     * Get the session of a player
+     *
+     * @param gameId   The game ID for the target game
+     * @param username The name of the player
+     * @return         The WebSocket session ID, or null if the player is not registered
+     */
+    public String getSessionId(String gameId, String username) {
+        if (gameId == null || username == null)
+            return null;
+        return players.get(new Binding(gameId, username));
+    }
+
+    /**
+     * Get the destination, which reaches only the session of a player
+     *
+     * @param gameId   The game ID for the target game
+     * @param username The name of the player
+     * @param queue    The queue, e.g. {@link #GAME_QUEUE}
+     * @return         The session destination, or null if the player is not registered or its session does not
+     *                 subscribe to the queue
+     */
+    public String getDestination(String gameId, String username, String queue) {
+        String sessionId = getSessionId(gameId, username);
+        Session session = sessionId == null ? null : sessions.get(sessionId);
+        if (session == null || !session.queues.containsValue(USER_PREFIX + queue))
+            return null;
+        return getSessionDestination(sessionId, queue);
+    }
+
+    /**
+     * Get the destination, which reaches only one session
+     *
+     * @param sessionId The WebSocket session ID
+     * @param queue     The queue, e.g. {@link #RESULT_QUEUE}
+     * @return          The session destination
+     */
+    public static String getSessionDestination(String sessionId, String queue) {
+        return USER_PREFIX + "/" + sessionId + queue;
+    }
+
+    /**
+     * Get the session, to which a destination is delivered
+     *
+     * @param destination The broker destination
+     * @return            The WebSocket session ID, or null if the destination is not a session destination
+     */
+    public static String sessionOf(String destination) {
+        if (destination == null || !destination.startsWith(USER_PREFIX + "/"))
+            return null;
+        int end = destination.indexOf('/', USER_PREFIX.length() + 1);
+        return end < 0 ? null : destination.substring(USER_PREFIX.length() + 1, end);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null)
+            return message;
+
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        switch (type) {
+            case SUBSCRIBE:
+                String destination = SimpMessageHeaderAccessor.getDestination(headers);
+                if (subscriptionId != null && destination != null && destination.startsWith(USER_PREFIX + QUEUE_PREFIX + "/"))
+                    session(sessionId).queues.put(subscriptionId, destination);
+                break;
+            case UNSUBSCRIBE:
+                Session session = sessions.get(sessionId);
+                if (session != null && subscriptionId != null)
+                    session.queues.remove(subscriptionId);
+                break;
+            default:
+                break;
+        }
+        return message;
+    }
+
+    /**
+     * Forget a session, which has ended
+     *
+     * @param sessionId The WebSocket session ID
+     * @return          The players, which were still bound to the session. A player, which has already reconnected
+     *                  through another session, stays bound to the new one and is not returned.
+     */
+    public List<Binding> release(String sessionId) {
+        List<Binding> released = new ArrayList<>();
+        Session session = sessionId == null ? null : sessions.remove(sessionId);
+        if (session == null)
+            return released;
+        for (Binding player : session.players) {
+            if (players.remove(player, sessionId))
+                released.add(player);
+        }
+        logger.fine("Released session " + sessionId);
+        return released;
+    }
+
+    private Session session(String sessionId) {
+        return sessions.computeIfAbsent(sessionId, id -> new Session());
+    }
+
+}
@@ -1,37 +1,36 @@
 package com.akarakoutev.werewolves.net.broadcast;
 
-import com.akarakoutev.werewolves.net.message.Message;
-import com.akarakoutev.werewolves.net.message.MessageType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
-import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
+import java.util.logging.Logger;
+
+/**
+ * Follows the lifecycle of the WebSocket sessions. A session ends when the client disconnects, when the connection
+ * drops, or when the broker stops receiving its heartbeats.
+ *
+ * @author Alberto Karakoutev
+ * @see PresenceTracker
+ */
 @Component
 public class WebSocketEventListener {
 
-	//private static final Logger LOGGER = LoggerFactory.getLogger(WebSocketEventListener.class);
+	public static final Logger logger = Logger.getLogger(WebSocketEventListener.class.getName());
 
 	@Autowired
-	private SimpMessageSendingOperations sendingOperations;
+	private PresenceTracker presenceTracker;
 
 	@EventListener
 	public void handleWebsocketConnectListener(final SessionConnectedEvent event) {
-		//LOGGER.info(event.toString());
+		logger.fine("Connected session " + event.getMessage().getHeaders().get("simpSessionId"));
 	}
 
 	@EventListener
 	public void handleWebsocketDisconnectListener(final SessionDisconnectEvent event) {
-		final StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-
-		final String username = (String) headerAccessor.getSessionAttributes().get("username");
-
-		Message message = new Message().withType(MessageType.DISCONNECT).withSender(username);
-
-		sendingOperations.convertAndSend("/topic/public", message);
+		presenceTracker.sessionEnded(event.getSessionId());
 	}
 
 }
@@ -1,26 +1,168 @@
 package com.akarakoutev.werewolves.net.broadcast;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.List;
+
+/**
+ * The STOMP endpoint and broker configuration. By default, the topics are fanned out by the in-process broker. In
+ * relay mode they go through an external STOMP broker, so that several server instances can serve the same lobby;
+ * the EmbeddedBrokerConfig can run that broker in-process.
+ * <br>
+ * The binary wire format and frame compression are applied by the in-process broker only; in relay mode all sessions
+ * receive JSON.
+ * <br>
+ * The executors of the channels are sized by the <i>werewolves.channels.*</i> properties.
+ *
+ * @author Alberto Karakoutev
+ * @see EmbeddedBrokerConfig
+ * @see ChannelExecutors
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketMessageConfig implements WebSocketMessageBrokerConfigurer{
 
+	/**
+	 * The destination prefix of all broadcast topics
+	 */
+	public static final String TOPIC_PREFIX = "/topic";
+
+	/**
+	 * How the topics are fanned out to the subscribers
+	 */
+	public enum BrokerMode {
+		/**
+		 * By the in-process broker, to the sessions of this server only
+		 */
+		SIMPLE,
+		/**
+		 * By an external STOMP broker, to the sessions of every server which is connected to it
+		 */
+		RELAY
+	}
+
+	@Autowired
+	private WireFormatInterceptor wireFormatInterceptor;
+
+	@Autowired
+	private SessionRegistry sessionRegistry;
+
+	@Autowired
+	private DirectoryTopicInterceptor directoryTopicInterceptor;
+
+	@Autowired
+	private ChannelExecutors channelExecutors;
+
+	@Autowired
+	@Lazy
+	@Qualifier("messageBrokerTaskScheduler")
+	private TaskScheduler heartbeatScheduler;
+
+	/**
+	 * The interval of the heartbeats, which the in-process broker sends and expects. A client, which negotiates
+	 * heartbeats and then stops sending them, is disconnected after a few missed intervals.
+	 */
+	@Value("${werewolves.presence.heartbeat:5000}")
+	private long heartbeatMillis;
+
+	@Value("${werewolves.broker.mode:simple}")
+	private String brokerMode;
+
+	@Value("${werewolves.broker.relay.host:localhost}")
+	private String relayHost;
+
+	@Value("${werewolves.broker.relay.port:61613}")
+	private int relayPort;
+
+	@Value("${werewolves.broker.relay.login:guest}")
+	private String relayLogin;
+
+	@Value("${werewolves.broker.relay.passcode:guest}")
+	private String relayPasscode;
+
 	@Override
 	public void registerStompEndpoints(StompEndpointRegistry registry) {
-		registry.addEndpoint("/handshake").setAllowedOriginPatterns("*");
+		registry.addEndpoint("/handshake").setAllowedOriginPatterns("*").addInterceptors(wireFormatInterceptor);
 		registry.addEndpoint("/handshake").setAllowedOriginPatterns("*").withSockJS();
 	}
 
 	@Override
 	public void configureMessageBroker(final MessageBrokerRegistry registry) {
 		registry.setApplicationDestinationPrefixes("/app");
-		registry.enableSimpleBroker("/topic");
+		registry.setUserDestinationPrefix(SessionRegistry.USER_PREFIX);
+		if (BrokerMode.valueOf(brokerMode.toUpperCase()) == BrokerMode.RELAY) {
+			registry.enableStompBrokerRelay(TOPIC_PREFIX, SessionRegistry.QUEUE_PREFIX)
+					.setRelayHost(relayHost)
+					.setRelayPort(relayPort)
+					.setClientLogin(relayLogin)
+					.setClientPasscode(relayPasscode)
+					.setSystemLogin(relayLogin)
+					.setSystemPasscode(relayPasscode);
+		} else {
+			registry.enableSimpleBroker(TOPIC_PREFIX, SessionRegistry.QUEUE_PREFIX)
+					.setHeartbeatValue(new long[]{heartbeatMillis, heartbeatMillis})
+					.setTaskScheduler(heartbeatScheduler);
+		}
+
+		ThreadPoolTaskExecutor brokerExecutor = channelExecutors.create(ChannelExecutors.BROKER);
+		if (brokerExecutor != null)
+			registry.configureBrokerChannel().taskExecutor(brokerExecutor);
+	}
+
+	/**
+	 * Replace the subscription registry of the simple broker with one indexed by exact destination
+	 *
+	 * @see ExactSubscriptionRegistry
+	 */
+	@Bean
+	public static BeanPostProcessor subscriptionRegistryInstaller() {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof SimpleBrokerMessageHandler)
+					((SimpleBrokerMessageHandler) bean).setSubscriptionRegistry(new ExactSubscriptionRegistry());
+				return bean;
+			}
+		};
+	}
+
+	@Override
+	public void configureClientInboundChannel(ChannelRegistration registration) {
+		registration.interceptors(wireFormatInterceptor, sessionRegistry, directoryTopicInterceptor);
+		executor(registration, ChannelExecutors.INBOUND);
+	}
+
+	@Override
+	public void configureClientOutboundChannel(ChannelRegistration registration) {
+		registration.interceptors(wireFormatInterceptor);
+		executor(registration, ChannelExecutors.OUTBOUND);
+	}
+
+	private void executor(ChannelRegistration registration, String channel) {
+		ThreadPoolTaskExecutor executor = channelExecutors.create(channel);
+		if (executor != null)
+			registration.taskExecutor(executor);
+	}
+
+	@Override
+	public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+		messageConverters.add(new BinaryMessageConverter());
+		return true;
 	}
 
-	
 }
@@ -0,0 +1,165 @@
+package com.akarakoutev.werewolves.net.broadcast;
+
+import com.akarakoutev.werewolves.net.message.Frame;
+import com.akarakoutev.werewolves.net.message.WireFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Negotiates the wire format of every session and swaps the frames, sent to a binary session, for their binary form.
+ * <br>
+ * A client asks for the binary format with the <i>encoding: binary</i> header on any SUBSCRIBE frame, and for the
+ * compression of large frames with the <i>compression: deflate</i> header. Every frame, which is rewritten here,
+ * goes out as <i>application/octet-stream</i> and names its format in the <i>encoding</i> header, since a binary
+ * session may still receive JSON frames. Compressed frames also carry the <i>content-encoding: deflate</i> header,
+ * and hold the deflated bytes of the named format. Only sessions of the plain WebSocket endpoint can switch, since SockJS can
+ * not carry binary frames. All other sessions, and all messages which do not come from the Broadcaster, stay
+ * uncompressed JSON.
+ *
+ * @author Alberto Karakoutev
+ * @see WireFormat
+ * @see FrameCompressor
+ * @see Broadcaster
+ */
+@Component
+public class WireFormatInterceptor implements ChannelInterceptor, HandshakeInterceptor {
+
+    public static final Logger logger = Logger.getLogger(WireFormatInterceptor.class.getName());
+
+    /**
+     * The session attribute, which marks a session as able to receive binary frames
+     */
+    static final String BINARY_CAPABLE = "wire:binary";
+
+    /**
+     * The STOMP header, which marks a compressed frame
+     */
+    public static final String CONTENT_ENCODING = "content-encoding";
+
+    private final FrameCompressor compressor;
+    private final Set<String> binarySessions = ConcurrentHashMap.newKeySet();
+    private final Set<String> deflateSessions = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public WireFormatInterceptor(FrameCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * @return Whether any session has negotiated the binary format, so frames need a binary form
+     */
+    public boolean hasBinarySessions() {
+        return !binarySessions.isEmpty();
+    }
+
+    /**
+     * Get the negotiated format of a session
+     *
+     * @param sessionId The WebSocket session ID
+     * @return          The wire format
+     */
+    public WireFormat getFormat(String sessionId) {
+        return sessionId != null && binarySessions.contains(sessionId) ? WireFormat.BINARY : WireFormat.JSON;
+    }
+
+    /**
+     * @param sessionId The WebSocket session ID
+     * @return          Whether the session has asked for compressed frames
+     */
+    public boolean isCompressed(String sessionId) {
+        return sessionId != null && deflateSessions.contains(sessionId);
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        attributes.put(BINARY_CAPABLE, true);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null)
+            return message;
+
+        switch (type) {
+            case SUBSCRIBE:
+                negotiate(sessionId, headers);
+                return message;
+            case DISCONNECT:
+                binarySessions.remove(sessionId);
+                deflateSessions.remove(sessionId);
+                return message;
+            case MESSAGE:
+                return encode(sessionId, message);
+            default:
+                return message;
+        }
+    }
+
+    private void negotiate(String sessionId, MessageHeaders headers) {
+        String encoding = SimpMessageHeaderAccessor.getFirstNativeHeader(WireFormat.HEADER, headers);
+        String compression = SimpMessageHeaderAccessor.getFirstNativeHeader(FrameCompressor.HEADER, headers);
+        boolean binary = encoding != null && WireFormat.of(encoding) == WireFormat.BINARY;
+        boolean deflate = FrameCompressor.DEFLATE.equalsIgnoreCase(compression);
+        if (!binary && !deflate)
+            return;
+
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        if (attributes == null || !Boolean.TRUE.equals(attributes.get(BINARY_CAPABLE))) {
+            logger.warning("Session " + sessionId + " asked for binary frames over SockJS, staying with JSON");
+            return;
+        }
+        if (binary && binarySessions.add(sessionId))
+            logger.info("Session " + sessionId + " switched to the binary format");
+        if (deflate && deflateSessions.add(sessionId))
+            logger.info("Session " + sessionId + " switched to compressed frames");
+    }
+
+    private Message<?> encode(String sessionId, Message<?> message) {
+        boolean binary = binarySessions.contains(sessionId);
+        boolean deflate = deflateSessions.contains(sessionId);
+        Object header = message.getHeaders().get(Broadcaster.FRAME_HEADER);
+        if ((!binary && !deflate) || !(header instanceof Frame))
+            return message;
+
+        Frame frame = (Frame) header;
+        WireFormat format = binary && frame.getBinary() != null ? WireFormat.BINARY : WireFormat.JSON;
+        byte[] payload = format == WireFormat.BINARY ? frame.getBinary() : frame.getPayload();
+        byte[] deflated = deflate ? compressor.compress(frame, format) : null;
+        if (format == WireFormat.JSON && deflated == null)
+            return message;
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(WireFormat.BINARY.getContentType());
+        accessor.setNativeHeader(WireFormat.HEADER, format.getValue());
+        if (deflated != null) {
+            accessor.setNativeHeader(CONTENT_ENCODING, FrameCompressor.DEFLATE);
+            payload = deflated;
+        }
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+}
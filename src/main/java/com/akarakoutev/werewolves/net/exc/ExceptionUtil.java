@@ -18,6 +18,10 @@ public class ExceptionUtil {
             status = HttpStatus.NOT_FOUND;
         if (e instanceof IOException || e instanceof LoginException)
             status = HttpStatus.FORBIDDEN;
+        if (e instanceof IllegalArgumentException)
+            status = HttpStatus.BAD_REQUEST;
+        if (e instanceof RateLimitException)
+            status = HttpStatus.TOO_MANY_REQUESTS;
 
         JsonObject content = MessageUtil.toContent("error", e.getMessage(), "code", Integer.toString(status.value()));
         String messageJson = MessageUtil.serialize(new ServerMessage(content, MessageType.ERROR));
@@ -31,6 +35,10 @@ public class ExceptionUtil {
             statusCode = HttpStatus.NOT_FOUND.value();
         } else if (e instanceof IOException || e instanceof  LoginException) {
             statusCode = HttpStatus.FORBIDDEN.value();
+        } else if (e instanceof IllegalArgumentException) {
+            statusCode = HttpStatus.BAD_REQUEST.value();
+        } else if (e instanceof RateLimitException) {
+            statusCode = HttpStatus.TOO_MANY_REQUESTS.value();
         }
 
         return MessageUtil.toContent("error", e.getMessage(), "code", Integer.toString(statusCode));
@@ -0,0 +1,9 @@
+package com.akarakoutev.werewolves.net.exc;
+
+public class RateLimitException extends Exception {
+
+    public RateLimitException(String action) {
+        super("Too many " + action + " actions, slow down!");
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.akarakoutev.werewolves.net.message;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the binary form of a message, as written by the BinaryJsonWriter, back into a JSON tree. Used for the messages,
+ * which binary clients send to the server.
+ *
+ * @author Alberto Karakoutev
+ * @see BinaryJsonWriter
+ */
+public final class BinaryJsonReader {
+
+    /**
+     * The deepest nesting of arrays, objects and embedded frames, which is read. The frames come from the clients, so a
+     * deeper one is refused instead of exhausting the stack of the inbound channel thread.
+     */
+    static final int MAX_DEPTH = 64;
+
+    private final byte[] in;
+    private final int end;
+    private final List<String> strings = new ArrayList<>();
+    private int position;
+
+    private BinaryJsonReader(byte[] in, int offset, int length) {
+        this.in = in;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Decode a binary frame
+     *
+     * @param bytes The frame
+     * @return      The decoded JSON value
+     * @throws      JsonParseException If the frame is malformed or of an unknown version
+     */
+    public static JsonElement read(byte[] bytes) {
+        return read(bytes, 0, bytes.length, 0);
+    }
+
+    private static JsonElement read(byte[] bytes, int offset, int length, int depth) {
+        BinaryJsonReader reader = new BinaryJsonReader(bytes, offset, length);
+        int version = reader.readByte();
+        if (version != BinaryJsonWriter.VERSION)
+            throw new JsonParseException("Unsupported binary message version " + version);
+        JsonElement value = reader.readValue(reader.readByte(), depth);
+        if (reader.position != reader.end)
+            throw new JsonParseException("Trailing bytes after the binary message");
+        return value;
+    }
+
+    /**
+     * Decode a binary frame into a message
+     *
+     * @param bytes The frame
+     * @return      The message
+     * @throws      JsonParseException If the frame is malformed or is not a message object
+     */
+    public static Message readMessage(byte[] bytes) {
+        JsonElement value = read(bytes);
+        if (!value.isJsonObject())
+            throw new JsonParseException("A binary message must be an object");
+
+        JsonObject object = value.getAsJsonObject();
+        Message message = new Message();
+        if (object.has("sender") && !object.get("sender").isJsonNull())
+            message.sender = object.get("sender").getAsString();
+        if (object.has("type") && !object.get("type").isJsonNull())
+            message.type = MessageType.valueOf(object.get("type").getAsString());
+        message.content = object.get("content");
+        return message;
+    }
+
+    private JsonElement readValue(int tag, int depth) {
+        if (depth > MAX_DEPTH)
+            throw new JsonParseException("The binary message is nested deeper than " + MAX_DEPTH + " levels");
+        switch (tag) {
+            case BinaryJsonWriter.NULL:
+                return JsonNull.INSTANCE;
+            case BinaryJsonWriter.FALSE:
+                return new JsonPrimitive(false);
+            case BinaryJsonWriter.TRUE:
+                return new JsonPrimitive(true);
+            case BinaryJsonWriter.INT:
+                long zigzag = readVarint();
+                return new JsonPrimitive((zigzag >>> 1) ^ -(zigzag & 1));
+            case BinaryJsonWriter.DOUBLE:
+                long bits = 0;
+                for (int i = 0; i < 8; i++) {
+                    bits = (bits << 8) | readByte();
+                }
+                return new JsonPrimitive(Double.longBitsToDouble(bits));
+            case BinaryJsonWriter.STRING:
+            case BinaryJsonWriter.INTERNED:
+            case BinaryJsonWriter.STRING_REF:
+                return new JsonPrimitive(readString(tag));
+            case BinaryJsonWriter.ARRAY:
+                JsonArray array = new JsonArray();
+                for (int next = readByte(); next != BinaryJsonWriter.END; next = readByte()) {
+                    array.add(readValue(next, depth + 1));
+                }
+                return array;
+            case BinaryJsonWriter.OBJECT:
+                JsonObject object = new JsonObject();
+                for (int next = readByte(); next != BinaryJsonWriter.END; next = readByte()) {
+                    String name = readString(next);
+                    object.add(name, readValue(readByte(), depth + 1));
+                }
+                return object;
+            case BinaryJsonWriter.EMBEDDED:
+                int length = readLength();
+                JsonElement embedded = read(in, position, length, depth + 1);
+                position += length;
+                return embedded;
+            default:
+                throw new JsonParseException("Unknown tag " + tag + " at " + (position - 1));
+        }
+    }
+
+    private String readString(int tag) {
+        if (tag == BinaryJsonWriter.STRING_REF) {
+            long index = readVarint();
+            if (index >= strings.size())
+                throw new JsonParseException("Unknown string reference " + index);
+            return strings.get((int) index);
+        }
+        if (tag != BinaryJsonWriter.STRING && tag != BinaryJsonWriter.INTERNED)
+            throw new JsonParseException("Expected a string at " + (position - 1));
+
+        int length = readLength();
+        String value = new String(in, position, length, StandardCharsets.UTF_8);
+        position += length;
+        if (tag == BinaryJsonWriter.INTERNED)
+            strings.add(value);
+        return value;
+    }
+
+    private int readLength() {
+        long length = readVarint();
+        if (length > end - position)
+            throw new JsonParseException("Truncated binary message");
+        return (int) length;
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new JsonParseException("Malformed varint at " + position);
+    }
+
+    private int readByte() {
+        if (position >= end)
+            throw new JsonParseException("Truncated binary message");
+        return in[position++] & 0xFF;
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.akarakoutev.werewolves.net.message;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A JsonWriter, which writes the compact binary form of a message instead of JSON text. Payloads write themselves
+ * through the JsonWriter interface, so the same code produces both encodings.
+ * <br>
+ * Every value starts with a one byte tag. Integers are zigzag varints, strings are a varint length followed by UTF-8.
+ * Object keys and short strings, such as player names, are interned in a string table: the first occurrence is
+ * written in full and later ones are written as a varint index into the table. The table belongs to one frame, so
+ * a frame can still be shared by every session it is sent to.
+ *
+ * @author Alberto Karakoutev
+ * @see BinaryJsonReader
+ * @see WireFormat#BINARY
+ */
+public final class BinaryJsonWriter extends JsonWriter {
+
+    /**
+     * The version of the layout, written as the first byte of every frame
+     */
+    public static final int VERSION = 1;
+
+    static final int NULL = 0;
+    static final int FALSE = 1;
+    static final int TRUE = 2;
+    static final int INT = 3;
+    static final int DOUBLE = 4;
+    static final int STRING = 5;
+    static final int INTERNED = 6;
+    static final int STRING_REF = 7;
+    static final int ARRAY = 8;
+    static final int OBJECT = 9;
+    static final int END = 10;
+    static final int EMBEDDED = 11;
+
+    /**
+     * Longer strings, e.g. chat texts, are rarely repeated and are not put in the string table
+     */
+    static final int MAX_INTERNED_LENGTH = 64;
+
+    private final ByteArrayOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private String deferredName;
+
+    public BinaryJsonWriter(ByteArrayOutputStream out) {
+        super(Writer.nullWriter());
+        this.out = out;
+        out.write(VERSION);
+    }
+
+    @Override
+    public BinaryJsonWriter beginArray() {
+        writeDeferredName();
+        out.write(ARRAY);
+        return this;
+    }
+
+    @Override
+    public BinaryJsonWriter endArray() {
+        out.write(END);
+        return this;
+    }
+
+    @Override
+    public BinaryJsonWriter beginObject() {
+        writeDeferredName();
+        out.write(OBJECT);
+        return this;
+    }
+
+    @Override
+    public BinaryJsonWriter endObject() {
+        deferredName = null;
+        out.write(END);
+        return this;
+    }
+
+    @Override
+    public BinaryJsonWriter name(String name) {
+        if (name == null)
+            throw new NullPointerException("name == null");
+        if (deferredName != null)
+            throw new IllegalStateException("Name " + deferredName + " has no value");
+        deferredName = name;
+        return this;
+    }
+
+    @Override
+    public BinaryJsonWriter value(String value) {
+        if (value == null)
+            return nullValue();
+        writeDeferredName();
+        writeString(value, value.length() <= MAX_INTERNED_LENGTH);
+        return this;
+    }
+
+    @Override
+    public BinaryJsonWriter jsonValue(String value) {
+        throw new UnsupportedOperationException("Raw JSON can not be written in the binary format");
+    }
+
+    @Override
+    public BinaryJsonWriter nullValue() {
+        if (deferredName != null && !getSerializeNulls()) {
+            deferredName = null;
+            return this;
+        }
+        writeDeferredName();
+        out.write(NULL);
+        return this;
+    }
+
+    @Override
+    public BinaryJsonWriter value(boolean value) {
+        writeDeferredName();
+        out.write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    @Override
+    public BinaryJsonWriter value(Boolean value) {
+        return value == null ? nullValue() : value(value.booleanValue());
+    }
+
+    @Override
+    public BinaryJsonWriter value(long value) {
+        writeDeferredName();
+        out.write(INT);
+        writeVarint((value << 1) ^ (value >> 63));
+        return this;
+    }
+
+    @Override
+    public BinaryJsonWriter value(double value) {
+        writeDeferredName();
+        out.write(DOUBLE);
+        long bits = Double.doubleToLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (bits >>> shift));
+        }
+        return this;
+    }
+
+    @Override
+    public BinaryJsonWriter value(Number value) {
+        if (value == null)
+            return nullValue();
+        double asDouble = value.doubleValue();
+        long asLong = value.longValue();
+        if (asDouble == asLong)
+            return value(asLong);
+        return value(asDouble);
+    }
+
+    /**
+     * Write a complete binary frame as a value, e.g. one message of a batch. The embedded frame keeps its own string
+     * table, so it is copied as it is.
+     *
+     * @param frame The binary frame
+     * @return      This writer
+     */
+    public BinaryJsonWriter embed(byte[] frame) {
+        writeDeferredName();
+        out.write(EMBEDDED);
+        writeVarint(frame.length);
+        out.write(frame, 0, frame.length);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void writeDeferredName() {
+        if (deferredName != null) {
+            writeString(deferredName, true);
+            deferredName = null;
+        }
+    }
+
+    private void writeString(String value, boolean intern) {
+        if (intern) {
+            Integer index = strings.get(value);
+            if (index != null) {
+                out.write(STRING_REF);
+                writeVarint(index);
+                return;
+            }
+            strings.put(value, strings.size());
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.write(intern ? INTERNED : STRING);
+        writeVarint(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+}
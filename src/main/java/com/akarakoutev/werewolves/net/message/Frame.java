@@ -0,0 +1,150 @@
+package com.akarakoutev.werewolves.net.message;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A message, encoded once into the bytes which are sent over the wire. A frame is immutable and is shared by every
+ * destination and subscriber session it is sent to.
+ * <br>
+ * A frame may also carry the binary form of the message, for the sessions which negotiated the binary wire format.
+ * Both forms are encoded up front, on the thread which builds the message, since the payload may read live game state.
+ *
+ * @author Alberto Karakoutev
+ * @see MessageUtil#encode(Message)
+ * @see com.akarakoutev.werewolves.net.broadcast.Broadcaster
+ */
+public final class Frame {
+
+    private static final byte[] BATCH_PREFIX = ("{\"type\":\"" + MessageType.BATCH.name() + "\",\"content\":[").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BATCH_SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Marks a form, which was compressed and turned out no smaller than the original
+     */
+    private static final byte[] INCOMPRESSIBLE = new byte[0];
+
+    private final byte[] payload;
+    private final byte[] binary;
+    private volatile byte[] deflatedPayload;
+    private volatile byte[] deflatedBinary;
+
+    private Frame(byte[] payload, byte[] binary) {
+        this.payload = payload;
+        this.binary = binary;
+    }
+
+    /**
+     * Encode a message into a frame
+     *
+     * @param message The message to be encoded
+     * @return        The frame
+     */
+    public static Frame of(Message message) {
+        return of(message, false);
+    }
+
+    /**
+     * Encode a message into a frame
+     *
+     * @param message    The message to be encoded
+     * @param withBinary Whether to also encode the binary form
+     * @return           The frame
+     */
+    public static Frame of(Message message, boolean withBinary) {
+        byte[] binary = withBinary ? MessageEncoder.encode(message, WireFormat.BINARY) : null;
+        return new Frame(MessageUtil.encode(message), binary);
+    }
+
+    /**
+     * Join frames into one BATCH frame, whose content is the array of the original messages in order. The messages
+     * are copied as they were encoded, so nothing is encoded again. The binary form is only built if all the frames
+     * have one.
+     *
+     * @param frames The frames, sent to the same destination
+     * @return       The batch frame
+     * @see          MessageType#BATCH
+     */
+    public static Frame batch(List<Frame> frames) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream(frames.stream().mapToInt(Frame::getSize).sum() + 48);
+        json.writeBytes(BATCH_PREFIX);
+        for (int i = 0; i < frames.size(); i++) {
+            if (i > 0)
+                json.write(',');
+            json.writeBytes(frames.get(i).payload);
+        }
+        json.writeBytes(BATCH_SUFFIX);
+
+        byte[] binary = null;
+        if (frames.stream().allMatch(frame -> frame.binary != null)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryJsonWriter writer = new BinaryJsonWriter(out);
+            writer.beginObject();
+            writer.name("type").value(MessageType.BATCH.name());
+            writer.name("content").beginArray();
+            for (Frame frame : frames) {
+                writer.embed(frame.binary);
+            }
+            writer.endArray();
+            writer.endObject();
+            binary = out.toByteArray();
+        }
+        return new Frame(json.toByteArray(), binary);
+    }
+
+    /**
+     * Get the encoded bytes. The array is shared and must not be modified.
+     *
+     * @return The UTF-8 encoded message
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Get the binary form of the message. The array is shared and must not be modified.
+     *
+     * @return The binary encoded message, or null if it was not encoded
+     */
+    public byte[] getBinary() {
+        return binary;
+    }
+
+    /**
+     * Get the compressed form of the message. It is compressed on the first call and shared by all later ones; two
+     * threads may race to compress it, but both produce the same bytes.
+     *
+     * @param format   The wire format of the form to be compressed
+     * @param deflater The compression, which returns null if it is not worth it
+     * @return         The compressed bytes, or null if the form is not compressed
+     */
+    public byte[] getDeflated(WireFormat format, UnaryOperator<byte[]> deflater) {
+        boolean isBinary = format == WireFormat.BINARY;
+        byte[] deflated = isBinary ? deflatedBinary : deflatedPayload;
+        if (deflated == null) {
+            byte[] original = isBinary ? binary : payload;
+            if (original == null)
+                return null;
+            deflated = deflater.apply(original);
+            if (deflated == null)
+                deflated = INCOMPRESSIBLE;
+            if (isBinary)
+                deflatedBinary = deflated;
+            else
+                deflatedPayload = deflated;
+        }
+        return deflated == INCOMPRESSIBLE ? null : deflated;
+    }
+
+    public int getSize() {
+        return payload.length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+}
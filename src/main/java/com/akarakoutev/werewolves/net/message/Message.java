@@ -1,5 +1,6 @@
 package com.akarakoutev.werewolves.net.message;
 
+import com.akarakoutev.werewolves.net.message.payload.Payload;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
@@ -9,6 +10,16 @@ public class Message {
 	MessageType type;
 	JsonElement content;
 
+	/**
+	 * The sequence number of the message within its game, or 0 if the message is not sequenced
+	 */
+	long seq;
+
+	/**
+	 * Typed content, which is streamed by the MessageEncoder in place of <i>content</i>. Never read from the wire.
+	 */
+	transient Payload payload;
+
 	public Message(JsonObject content, MessageType messageType) {
 		this.type = messageType;
 		this.content = content;
@@ -30,6 +41,12 @@ public class Message {
 	public JsonElement getContent() {
 		return content;
 	}
+	public Payload getPayload() {
+		return payload;
+	}
+	public long getSeq() {
+		return seq;
+	}
 
 	public void setType(MessageType type) {
 		this.type = type;
@@ -43,5 +60,9 @@ public class Message {
 		this.sender = sender;
 		return this;
 	}
+	public Message withSeq(long seq) {
+		this.seq = seq;
+		return this;
+	}
 
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.akarakoutev.werewolves.net.message;
+
+import com.akarakoutev.werewolves.net.message.payload.Payload;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams messages as UTF-8 JSON into a buffer, which is owned by the encoding thread and reused between messages.
+ * Typed payloads are written field by field, legacy JsonElement content is copied in, and the only allocation per
+ * message is the resulting byte array. The binary form is written by the same code, through a BinaryJsonWriter.
+ *
+ * @author Alberto Karakoutev
+ * @see Payload
+ * @see Frame
+ * @see BinaryJsonWriter
+ */
+public final class MessageEncoder {
+
+    /**
+     * A buffer, which has grown over this size, is dropped after use, so that one large message does not pin memory
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final Gson serializer = new Gson();
+    private static final ThreadLocal<MessageEncoder> encoders = ThreadLocal.withInitial(MessageEncoder::new);
+
+    private final Buffer buffer = new Buffer();
+    private final Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
+
+    private MessageEncoder() {
+    }
+
+    /**
+     * Encode a message
+     *
+     * @param message The message to be encoded
+     * @return        The UTF-8 JSON bytes
+     */
+    public static byte[] encode(Message message) {
+        return encode(message, WireFormat.JSON);
+    }
+
+    /**
+     * Encode a message in the given wire format
+     *
+     * @param message The message to be encoded
+     * @param format  The wire format
+     * @return        The encoded bytes
+     */
+    public static byte[] encode(Message message, WireFormat format) {
+        MessageEncoder encoder = encoders.get();
+        try {
+            return format == WireFormat.BINARY ? encoder.writeBinary(message) : encoder.write(message);
+        } catch (IOException e) {
+            encoders.remove();
+            throw new UncheckedIOException(e);
+        } finally {
+            if (encoder.buffer.capacity() > MAX_RETAINED_CAPACITY)
+                encoders.remove();
+        }
+    }
+
+    private byte[] write(Message message) throws IOException {
+        buffer.reset();
+        JsonWriter out = new JsonWriter(writer);
+        writeMessage(message, out);
+        out.flush();
+
+        return buffer.toByteArray();
+    }
+
+    private byte[] writeBinary(Message message) throws IOException {
+        buffer.reset();
+        writeMessage(message, new BinaryJsonWriter(buffer));
+
+        return buffer.toByteArray();
+    }
+
+    private static void writeMessage(Message message, JsonWriter out) throws IOException {
+        out.setSerializeNulls(false);
+
+        out.beginObject();
+        out.name("sender").value(message.sender);
+        if (message.type != null)
+            out.name("type").value(message.type.name());
+        if (message.seq > 0)
+            out.name("seq").value(message.seq);
+        if (message.payload != null) {
+            out.name("content");
+            message.payload.write(out);
+        } else if (message.content != null) {
+            out.name("content");
+            serializer.toJson(message.content, out);
+        }
+        out.endObject();
+    }
+
+    private static class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+}
@@ -6,6 +6,12 @@ public enum MessageType {
 	NOTIFY,
 	DATA,
 	CHAT,
+	CHAT_HISTORY,
+	BATCH,
+	RESYNC,
+	VIEW,
+	RESULT,
+	DIRECTORY,
 
 	DAY,
 	NIGHT,
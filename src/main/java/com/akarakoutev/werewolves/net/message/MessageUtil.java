@@ -5,6 +5,8 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import java.nio.charset.StandardCharsets;
+
 public class MessageUtil {
 
     private static final Gson serializer = new Gson();
@@ -14,7 +16,11 @@ public class MessageUtil {
     }
 
     public static String serialize(Message message) {
-        return serializer.toJson(message);
+        return new String(encode(message), StandardCharsets.UTF_8);
+    }
+
+    public static byte[] encode(Message message) {
+        return MessageEncoder.encode(message);
     }
 
     public static <T> T fromContent(JsonElement json, Class<T> clazz) {
@@ -1,5 +1,6 @@
 package com.akarakoutev.werewolves.net.message;
 
+import com.akarakoutev.werewolves.net.message.payload.Payload;
 import com.google.gson.JsonElement;
 
 public class ServerMessage extends Message {
@@ -10,6 +11,12 @@ public class ServerMessage extends Message {
          this.content = content;
      }
 
+     public ServerMessage(Payload payload, MessageType messageType) {
+         sender = "SERVER";
+         this.type = messageType;
+         this.payload = payload;
+     }
+
      public ServerMessage(MessageType messageType) {
          sender = "SERVER";
          this.type = messageType;
@@ -0,0 +1,59 @@
+package com.akarakoutev.werewolves.net.message;
+
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The encodings of the messages on the wire. JSON is the default; a session switches to the binary encoding by
+ * subscribing with the <i>encoding: binary</i> STOMP header.
+ *
+ * @author Alberto Karakoutev
+ * @see BinaryJsonWriter
+ * @see com.akarakoutev.werewolves.net.broadcast.WireFormatInterceptor
+ */
+public enum WireFormat {
+
+    JSON("json", new MimeType("text", "plain", StandardCharsets.UTF_8)),
+    /**
+     * Sent as binary WebSocket frames, so it is only available on the plain WebSocket endpoint and not over SockJS
+     */
+    BINARY("binary", MimeTypeUtils.APPLICATION_OCTET_STREAM);
+
+    /**
+     * The STOMP header of the SUBSCRIBE frame, by which a client chooses the encoding
+     */
+    public static final String HEADER = "encoding";
+
+    private final String value;
+    private final MimeType contentType;
+
+    WireFormat(String value, MimeType contentType) {
+        this.value = value;
+        this.contentType = contentType;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public MimeType getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Find the encoding, requested by a client
+     *
+     * @param value The value of the encoding header
+     * @return      The encoding, or null if the value is unknown
+     */
+    public static WireFormat of(String value) {
+        for (WireFormat format : values()) {
+            if (format.value.equalsIgnoreCase(value))
+                return format;
+        }
+        return null;
+    }
+
+}
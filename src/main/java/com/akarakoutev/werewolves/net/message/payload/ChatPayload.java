@@ -0,0 +1,83 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.akarakoutev.werewolves.chat.Chat;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Some messages of a chat, following the <u>chat.json</u> schema. Used by the <u>CHAT</u> deltas, the
+ * <u>CHAT_HISTORY</u> pages and the chats embedded in other messages. The fields of the chat are copied when the
+ * payload is built, so it can be written outside the game's mailbox.
+ *
+ * @author Alberto Karakoutev
+ * @see Chat
+ */
+public class ChatPayload implements Payload {
+
+    private final String type;
+    private final int cycle;
+    private final String id;
+    private final long lastSeq;
+    private final List<Chat.Message> messages;
+    private final Boolean more;
+
+    /**
+     * @param chat     The chat
+     * @param messages The messages to be written, in sequence order
+     * @param more     Whether there are more messages after these, or null to leave the field out
+     */
+    public ChatPayload(Chat chat, List<Chat.Message> messages, Boolean more) {
+        this.type = chat.getType().getValue();
+        this.cycle = chat.getCycle();
+        this.id = chat.getId().toString();
+        this.lastSeq = chat.getLastSeq();
+        this.messages = List.copyOf(messages);
+        this.more = more;
+    }
+
+    /**
+     * A single, newly appended message
+     */
+    public static ChatPayload delta(Chat chat, Chat.Message message) {
+        return new ChatPayload(chat, List.of(message), null);
+    }
+
+    /**
+     * The messages, which are still in memory
+     */
+    public static ChatPayload latest(Chat chat) {
+        return new ChatPayload(chat, chat.getLatestMessages(), null);
+    }
+
+    /**
+     * A page of the chat history
+     */
+    public static ChatPayload history(Chat chat, Chat.Page page) {
+        return new ChatPayload(chat, page.getMessages(), page.hasMore());
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("messages").beginArray();
+        for (Chat.Message message : messages) {
+            out.beginObject();
+            out.name("seq").value(message.getSeq());
+            out.name("ts").value(message.getTimestamp().toString().split("[.]")[0]);
+            out.name("sender").value(message.getSender());
+            out.name("message").value(message.getMessage());
+            out.endObject();
+        }
+        out.endArray();
+        out.name("type").value(type);
+        out.name("cycle").value(Integer.toString(cycle));
+        out.name("id").value(id);
+        out.name("seq").value(lastSeq);
+        if (more != null)
+            out.name("more").value(more);
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The start of a day, following the <u>day.json</u> schema
+ * <br><b>[Serialized]</b> <i>players</i> - The remaining players
+ * <br><b>[Serialized]</b> <i>summary</i> - The summary of the previous night
+ * <br><b>[Serialized]</b> <i>vote</i> - The lynch vote
+ * <br><b>[Serialized]</b> <i>cycle</i> - The current day-night cycle
+ * <br><b>[Serialized]</b> <i>chat</i> - The ID of the day chat
+ * <br><b>[Serialized]</b> <i>message</i> - A text message
+ *
+ * @author Alberto Karakoutev
+ */
+public class DayPayload implements Payload {
+
+    private final List<String> players;
+    private final List<String> dead;
+    private final String hagged;
+    private final String silenced;
+    private final boolean troublemaker;
+    private final VotePayload vote;
+    private final int cycle;
+    private final String chatId;
+    private final String message;
+
+    public DayPayload(List<String> players, List<String> dead, String hagged, String silenced, boolean troublemaker,
+                      VotePayload vote, int cycle, String chatId, String message) {
+        this.players = players;
+        this.dead = dead;
+        this.hagged = hagged;
+        this.silenced = silenced;
+        this.troublemaker = troublemaker;
+        this.vote = vote;
+        this.cycle = cycle;
+        this.chatId = chatId;
+        this.message = message;
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("players");
+        Payload.writeStrings(out, players);
+        out.name("summary").beginObject();
+        if (hagged != null)
+            out.name("hagged").value(hagged);
+        if (silenced != null)
+            out.name("silenced").value(silenced);
+        out.name("dead");
+        Payload.writeStrings(out, dead);
+        out.name("troublemaker").value(troublemaker);
+        out.endObject();
+        out.name("vote");
+        vote.write(out);
+        out.name("cycle").value(cycle);
+        out.name("chat").value(chatId);
+        out.name("message").value(message);
+        out.endObject();
+    }
+
+}
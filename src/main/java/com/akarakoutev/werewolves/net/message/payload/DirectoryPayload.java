@@ -0,0 +1,76 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.akarakoutev.werewolves.game.GameDirectory;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A snapshot of the game directory, or the changes to it since the last push. Used by the <u>DIRECTORY</u> message.
+ * Every game carries the revision, at which it was last changed, so a client applies a game only if it is newer than
+ * the one it already has, no matter in which order the snapshot and the changes arrive.
+ *
+ * @author Alberto Karakoutev
+ * @see GameDirectory
+ */
+public class DirectoryPayload implements Payload {
+
+    private final long version;
+    private final boolean snapshot;
+    private final List<GameDirectory.Entry> games = new ArrayList<>();
+    private final List<String> removed = new ArrayList<>();
+    private final List<Long> removedRevisions = new ArrayList<>();
+
+    /**
+     * @param version  The version of the directory, when the payload was built
+     * @param snapshot Whether the payload lists the whole directory, instead of the changes to it
+     */
+    public DirectoryPayload(long version, boolean snapshot) {
+        this.version = version;
+        this.snapshot = snapshot;
+    }
+
+    public DirectoryPayload add(GameDirectory.Entry game) {
+        games.add(game);
+        return this;
+    }
+
+    public DirectoryPayload remove(String gameId, long revision) {
+        removed.add(gameId);
+        removedRevisions.add(revision);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return games.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("version").value(version);
+        out.name("snapshot").value(snapshot);
+        out.name("games").beginArray();
+        for (GameDirectory.Entry game : games) {
+            out.beginObject();
+            out.name("id").value(game.getId());
+            out.name("players").value(game.toString());
+            out.name("started").value(game.isStarted());
+            out.name("revision").value(game.getRevision());
+            out.endObject();
+        }
+        out.endArray();
+        out.name("removed").beginArray();
+        for (int i = 0; i < removed.size(); i++) {
+            out.beginObject();
+            out.name("id").value(removed.get(i));
+            out.name("revision").value(removedRevisions.get(i));
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * The result of a lynch vote, following the <u>lynch.json</u> schema
+ *
+ * @author Alberto Karakoutev
+ */
+public class LynchPayload implements Payload {
+
+    private final String lynched;
+
+    public LynchPayload(String lynched) {
+        this.lynched = lynched;
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("lynched").value(lynched);
+        out.endObject();
+    }
+
+}
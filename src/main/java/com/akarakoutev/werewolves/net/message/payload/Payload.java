@@ -0,0 +1,40 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * The typed content of a ServerMessage. A payload writes itself straight to the output, field by field, so no
+ * intermediate JSON tree or string is built.
+ *
+ * @author Alberto Karakoutev
+ * @see com.akarakoutev.werewolves.net.message.MessageEncoder
+ */
+@FunctionalInterface
+public interface Payload {
+
+    /**
+     * Write the payload as a single JSON value
+     *
+     * @param out The writer of the message
+     * @throws    IOException If the output fails
+     */
+    void write(JsonWriter out) throws IOException;
+
+    /**
+     * Write a list of strings as a JSON array
+     *
+     * @param out    The writer of the message
+     * @param values The strings
+     * @throws       IOException If the output fails
+     */
+    static void writeStrings(JsonWriter out, Iterable<String> values) throws IOException {
+        out.beginArray();
+        for (String value : values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The players of a lobby with their ready status. Used by the <u>CONNECT</u>, <u>DISCONNECT</u> and <u>READY</u>
+ * messages. The values are copied when the payload is built, so it can be written outside the game's mailbox.
+ *
+ * @author Alberto Karakoutev
+ */
+public class PlayersPayload implements Payload {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Boolean> ready = new ArrayList<>();
+
+    public PlayersPayload add(String name, boolean ready) {
+        this.names.add(name);
+        this.ready.add(ready);
+        return this;
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginArray();
+        for (int i = 0; i < names.size(); i++) {
+            out.beginObject();
+            out.name("name").value(names.get(i));
+            out.name("ready").value(Boolean.toString(ready.get(i)));
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+}
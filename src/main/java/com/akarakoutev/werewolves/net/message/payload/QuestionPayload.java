@@ -0,0 +1,30 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A yes or no question to a role, following the <u>question.json</u> schema
+ *
+ * @author Alberto Karakoutev
+ */
+public class QuestionPayload implements Payload {
+
+    private final String question;
+    private final boolean active;
+
+    public QuestionPayload(String question, boolean active) {
+        this.question = question;
+        this.active = active;
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("question").value(question);
+        out.name("active").value(Boolean.toString(active));
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.akarakoutev.werewolves.roles.generic.Role;
+import com.akarakoutev.werewolves.sprite.Sprite;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A role, following the <u>role.json</u> schema
+ * <br><b>[Serialized]</b> <i>name</i> - The name of the role
+ * <br><b>[Serialized]</b> <i>team</i> - The team of the role
+ * <br><b>[Serialized]</b> <i>sprite</i> - The URL of the role's sprite
+ * <br><b>[Serialized]</b> <i>spriteHash</i> - The content hash of the role's sprite
+ * <br><b>[Serialized]</b> <i>gameId</i> - The game ID of the target game
+ * <br><b>[Serialized]</b> <i>owner</i> - The name of the player with the role
+ *
+ * @author Alberto Karakoutev
+ * @see Role
+ * @see Sprite
+ */
+public class RolePayload implements Payload {
+
+    private final Role role;
+    private final Sprite sprite;
+
+    public RolePayload(Role role, Sprite sprite) {
+        this.role = role;
+        this.sprite = sprite;
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("name").value(role.name.name());
+        out.name("team").value(role.team.name());
+        out.name("sprite").value(sprite.getUrl());
+        out.name("spriteHash").value(sprite.getHash());
+        out.name("gameId").value(role.gameId);
+        out.name("owner").value(role.owner.getName());
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * The two roles of a player, following the <u>roles.json</u> schema. Used by the <u>ROLES</u> messages.
+ *
+ * @author Alberto Karakoutev
+ * @see RolePayload
+ */
+public class RolesPayload implements Payload {
+
+    private final RolePayload active;
+    private final RolePayload passive;
+
+    public RolesPayload(RolePayload active, RolePayload passive) {
+        this.active = active;
+        this.passive = passive;
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("active");
+        active.write(out);
+        out.name("passive");
+        passive.write(out);
+        out.endObject();
+    }
+
+}
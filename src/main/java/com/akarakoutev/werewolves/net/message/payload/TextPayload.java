@@ -0,0 +1,28 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A plain text message, following the <u>notify.json</u> schema. Used by the <u>NOTIFY</u>, <u>NIGHT</u> and
+ * <u>GAME_BEGIN</u> messages.
+ *
+ * @author Alberto Karakoutev
+ */
+public class TextPayload implements Payload {
+
+    private final String message;
+
+    public TextPayload(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("message").value(message);
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The view of a game, as one player sees it, or the sections of it which have changed since a given version. Used by
+ * the <u>VIEW</u> messages. The sections are built when the payload is, so it can be written outside the game's
+ * mailbox.
+ *
+ * @author Alberto Karakoutev
+ * @see com.akarakoutev.werewolves.game.GameView
+ */
+public class ViewPayload implements Payload {
+
+    private static final Gson serializer = new Gson();
+
+    private final boolean full;
+    private final Map<String, JsonElement> sections = new LinkedHashMap<>();
+    private long version;
+
+    /**
+     * @param full Whether the view holds all sections, rather than the changed ones
+     */
+    public ViewPayload(boolean full) {
+        this.full = full;
+    }
+
+    public ViewPayload add(String name, JsonElement section) {
+        sections.put(name, section);
+        return this;
+    }
+
+    public ViewPayload withVersion(long version) {
+        this.version = version;
+        return this;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Map<String, JsonElement> getSections() {
+        return sections;
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("version").value(version);
+        out.name("full").value(full);
+        out.name("sections").beginObject();
+        for (Map.Entry<String, JsonElement> section : sections.entrySet()) {
+            out.name(section.getKey());
+            serializer.toJson(section.getValue(), out);
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.akarakoutev.werewolves.vote.Vote;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The state of a vote, following the <u>vote.json</u> schema. The ballot of the team votes is written as a nested
+ * object of player names to their number of votes.
+ *
+ * @author Alberto Karakoutev
+ * @see Vote
+ */
+public class VotePayload implements Payload {
+
+    private final Vote vote;
+
+    public VotePayload(Vote vote) {
+        this.vote = vote;
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("votees");
+        Payload.writeStrings(out, vote.getVoteeNames());
+        if (vote.getType() != Vote.Type.LYNCH) {
+            out.name("ballot").beginObject();
+            for (Map.Entry<String, Integer> count : vote.getBallotCounts().entrySet()) {
+                out.name(count.getKey()).value(count.getValue());
+            }
+            out.endObject();
+        }
+        out.name("type").value(vote.getType().getValue());
+        out.name("cycle").value(Integer.toString(vote.getCycle()));
+        out.name("id").value(vote.getId().toString());
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The wake-up call of a team, following the <u>wake_multiple.json</u> schema. The team's chat and vote are nested
+ * objects. Only the message differs between the team members, so the rest of the payload is shared.
+ *
+ * @author Alberto Karakoutev
+ * @see ChatPayload
+ * @see VotePayload
+ */
+public class WakeMultiplePayload implements Payload {
+
+    private final int targetCount;
+    private final List<String> team;
+    private final String voter;
+    private final ChatPayload chat;
+    private final VotePayload vote;
+    private final String message;
+
+    public WakeMultiplePayload(int targetCount, List<String> team, String voter, ChatPayload chat, VotePayload vote) {
+        this(targetCount, team, voter, chat, vote, null);
+    }
+
+    private WakeMultiplePayload(int targetCount, List<String> team, String voter, ChatPayload chat, VotePayload vote, String message) {
+        this.targetCount = targetCount;
+        this.team = team;
+        this.voter = voter;
+        this.chat = chat;
+        this.vote = vote;
+        this.message = message;
+    }
+
+    /**
+     * Get the payload for one team member
+     *
+     * @param message The message to the member
+     * @return        A copy of the payload with the message
+     */
+    public WakeMultiplePayload withMessage(String message) {
+        return new WakeMultiplePayload(targetCount, team, voter, chat, vote, message);
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("targetCount").value(targetCount);
+        out.name("team");
+        Payload.writeStrings(out, team);
+        out.name("voter").value(voter);
+        out.name("chat");
+        chat.write(out);
+        out.name("vote");
+        vote.write(out);
+        if (message != null)
+            out.name("message").value(message);
+        out.endObject();
+    }
+
+}
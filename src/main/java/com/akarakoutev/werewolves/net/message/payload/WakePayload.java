@@ -0,0 +1,65 @@
+package com.akarakoutev.werewolves.net.message.payload;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The wake-up call of a single role, following the <u>wake.json</u> schema. Only the targeter roles get the list of
+ * players and the target count.
+ *
+ * @author Alberto Karakoutev
+ */
+public class WakePayload implements Payload {
+
+    private final String message;
+    private final String role;
+    private final String awokenRole;
+    private final List<String> list;
+    private final Integer targetCount;
+    private final Boolean canCancelTurn;
+
+    private WakePayload(String message, String role, String awokenRole, List<String> list, Integer targetCount, Boolean canCancelTurn) {
+        this.message = message;
+        this.role = role;
+        this.awokenRole = awokenRole;
+        this.list = list;
+        this.targetCount = targetCount;
+        this.canCancelTurn = canCancelTurn;
+    }
+
+    public static WakePayload targeter(String message, String awokenRole, List<String> list, int targetCount, boolean canCancelTurn) {
+        return new WakePayload(message, "targeter", awokenRole, list, targetCount, canCancelTurn);
+    }
+
+    public static WakePayload wakeable(String message, String awokenRole) {
+        return new WakePayload(message, "wakeable", awokenRole, null, null, null);
+    }
+
+    /**
+     * A wake-up call, which only notifies the player, e.g. of a role that can not be used
+     */
+    public static WakePayload notice(String message, String awokenRole) {
+        return new WakePayload(message, null, awokenRole, null, null, null);
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        if (list != null) {
+            out.name("list");
+            Payload.writeStrings(out, list);
+        }
+        out.name("message").value(message);
+        if (role != null)
+            out.name("role").value(role);
+        if (targetCount != null)
+            out.name("targetCount").value(targetCount);
+        out.name("awokenRole").value(awokenRole);
+        if (canCancelTurn != null)
+            out.name("canCancelTurn").value(canCancelTurn);
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.akarakoutev.werewolves.net.mvc;
+
+import com.akarakoutev.werewolves.sprite.Sprite;
+import com.akarakoutev.werewolves.sprite.SpriteCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller class, serving the static assets of the game. Assets are addressed by the hash of their content, so
+ * they are sent with a strong ETag and may be cached by clients indefinitely.
+ *
+ * @author Alberto Karakoutev
+ * @see    SpriteCache
+ */
+@Controller
+@RequestMapping("assets")
+public class AssetController {
+
+    private static final String CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+
+    /**
+     * Get the sprite of a role
+     *
+     * @param hash    The content hash of the sprite
+     * @param request The web request, used to answer conditional requests
+     * @return        The JPEG image, <i>304 Not Modified</i> if the client already has it, or <i>404 Not Found</i>
+     * @see           Sprite#getUrl()
+     */
+    @GetMapping("/roles/{hash}.jpg")
+    public ResponseEntity<byte[]> getRoleSprite(@PathVariable String hash, WebRequest request) {
+        Sprite sprite = SpriteCache.getByHash(hash);
+        if (sprite == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+
+        if (request.checkNotModified(sprite.getHash()))
+            return null;
+
+        return ResponseEntity.ok()
+                .eTag(sprite.getHash())
+                .header(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL)
+                .contentType(MediaType.IMAGE_JPEG)
+                .contentLength(sprite.getSize())
+                .body(sprite.getBytes());
+    }
+
+}
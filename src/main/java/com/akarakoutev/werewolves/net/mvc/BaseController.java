@@ -5,9 +5,9 @@ import javax.servlet.http.HttpServletRequest;
 import com.akarakoutev.werewolves.net.message.MessageType;
 import com.akarakoutev.werewolves.net.message.MessageUtil;
 import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.message.payload.PlayersPayload;
 import com.akarakoutev.werewolves.net.exc.ExceptionUtil;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -58,15 +58,18 @@ public class BaseController {
 	 * @param request The HTTP request object
 	 * <br><b>[Serialized]</b> <i>gameId</i> - The game ID for the target game
 	 * <br><b>[Serialized]</b> <i>username</i> - The username, with which to log in the user
-	 * @return        An empty ServerMessage
+	 * @return        A <u>DATA</u> type ServerMessage, containing the token, with which the player subscribes to its
+	 *                private channels
 	 */
 	@PostMapping(value = "/user/login", consumes = MediaType.APPLICATION_JSON_VALUE)
 	public ResponseEntity<String> login(@RequestBody String content, HttpServletRequest request) {
 		try {
 			JsonObject contentMap = MessageUtil.deserialize(content);
-			baseService.login(contentMap.get("gameId").getAsString(), contentMap.get("username").getAsString(), request);
+			String token = baseService.login(contentMap.get("gameId").getAsString(), contentMap.get("username").getAsString(), request);
+			JsonObject responseContent = MessageUtil.toContent("token", token);
+			String response = MessageUtil.serialize(new ServerMessage(responseContent, MessageType.DATA));
 
-			return new ResponseEntity<>(MessageUtil.emptyMessage(), HttpStatus.OK);
+			return new ResponseEntity<>(response, HttpStatus.OK);
 		} catch (Exception e) {
 			return ExceptionUtil.errorResponse(e);
 		}
@@ -113,15 +116,23 @@ public class BaseController {
 	}
 
 	/**
-	 * Get all active games
+	 * Get the active games, optionally filtered and paged
 	 *
-	 * @return A <u>DATA</u> type ServerMessage, containing a JSON array with all active game IDs
+	 * @param open    Whether to list only the games which a player can still join
+	 * @param started Whether to list only the games which have started
+	 * @param size    The number of player slots of the listed games, or 0 for any
+	 * @param offset  The number of matching games to skip
+	 * @param limit   The maximum number of games to list, or 0 for all
+	 * @return A <u>DATA</u> type ServerMessage, containing a JSON array with the active game IDs, in order of creation
 	 */
 	@GetMapping("/game/all")
-	public ResponseEntity<String> getAllGames(){
+	public ResponseEntity<String> getAllGames(@RequestParam(defaultValue = "false") boolean open,
+											  @RequestParam(defaultValue = "false") boolean started,
+											  @RequestParam(defaultValue = "0") int size,
+											  @RequestParam(defaultValue = "0") int offset,
+											  @RequestParam(defaultValue = "0") int limit) {
 		try {
-			JsonArray games = baseService.getAllGames();
-			String response = MessageUtil.serialize(new ServerMessage(games, MessageType.DATA));
+			String response = baseService.getAllGames(open, started, size, offset, limit);
 
 			return new ResponseEntity<>(response, HttpStatus.OK);
 		} catch (Exception e) {
@@ -138,7 +149,7 @@ public class BaseController {
 	@GetMapping("/game/{gameId}/players")
 	public ResponseEntity<String> getPlayers(@PathVariable String gameId) {
 		try {
-			JsonArray players = baseService.getAllPlayers(gameId);
+			PlayersPayload players = baseService.getAllPlayers(gameId);
 			String response = MessageUtil.serialize(new ServerMessage(players, MessageType.DATA));
 
 			return new ResponseEntity<>(response, HttpStatus.OK);
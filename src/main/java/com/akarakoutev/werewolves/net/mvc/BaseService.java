@@ -1,12 +1,15 @@
 package com.akarakoutev.werewolves.net.mvc;
 
 import com.akarakoutev.werewolves.game.Game;
+import com.akarakoutev.werewolves.game.GameDirectory;
 import com.akarakoutev.werewolves.game.GameManager;
+import com.akarakoutev.werewolves.game.GameRegistry;
 import com.akarakoutev.werewolves.net.exc.*;
 import com.akarakoutev.werewolves.net.message.Message;
 import com.akarakoutev.werewolves.net.message.MessageType;
 import com.akarakoutev.werewolves.net.message.MessageUtil;
 import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.message.payload.PlayersPayload;
 import com.akarakoutev.werewolves.player.Player;
 import com.akarakoutev.werewolves.player.PlayerManager;
 import com.google.gson.JsonArray;
@@ -17,11 +20,10 @@ import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
+import java.security.SecureRandom;
+import java.util.Base64;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -35,38 +37,64 @@ import java.util.logging.Logger;
 public class BaseService {
 
     /**
-     * A map of all the active game IDs to their respective GameManager objects. This is the main in-memory storage
-     * of the server
+     * A registry of all the active game IDs to their respective GameManager objects. This is the main in-memory storage
+     * of the server and is shared by all request and broker threads
      *
+     * @see GameRegistry
      * @see GameManager
      * @see Game
      */
-    private static Map<String, GameManager> activeGames;
+    private static final GameRegistry activeGames = new GameRegistry();
 
     public static final Logger logger = Logger.getLogger(PlayerManager.class.getName());
 
+    /**
+     * The source of the login tokens
+     */
+    private static final SecureRandom tokens = new SecureRandom();
+
+    /**
+     * The number of distinct game listings, e.g. pages or filters, which are kept serialized
+     */
+    private static final int MAX_CACHED_LISTINGS = 64;
+
+    /**
+     * The serialized game listings, by query
+     */
+    private final Map<String, Listing> listings = new ConcurrentHashMap<>();
+
+    private static class Listing {
+        final long version;
+        final String response;
+
+        Listing(long version, String response) {
+            this.version = version;
+            this.response = response;
+        }
+    }
+
     @Autowired
     public BaseService() {
-        activeGames = new HashMap<>();
     }
 
 
     /**
-     * Log in a player. Check for same username and same IP of already logged-in users
+     * Log in a player. Check for same username and same IP of already logged-in users. The player is given a secret
+     * token, with which its client binds a WebSocket session to the player's private channels.
      *
      * @param gameID   The game ID for the target game
      * @param username The username with which to log in the user
      * @param request  The HTTP request
+     * @return         The token of the player
      * @throws         GameNotFoundException If the game can not be found
      * @throws         LoginException If the game is full, the IP address is invalid or the player is already logged-in
+     * @throws         PlayerNotFoundException If the mailbox command fails to find a player
+     * @throws         IOException If the mailbox command fails to read a resource
      */
-    public void login(String gameID, String username, HttpServletRequest request) throws LoginException, GameNotFoundException {
+    public String login(String gameID, String username, HttpServletRequest request) throws LoginException, GameNotFoundException, PlayerNotFoundException, IOException {
 
         GameManager gameManager = getGameManager(gameID);
 
-        if(gameManager.areAllPositionsFilled())
-            throw new LoginException("This game is already full!");
-
         String remoteAddress = "";
         if (request != null) {
             remoteAddress = request.getHeader("X-FORWARDED-FOR");
@@ -78,15 +106,33 @@ public class BaseService {
         if(remoteAddress == null || remoteAddress.isEmpty())
             throw new LoginException("Invalid address!");
 
-        for(Player player : gameManager.getGame().getPlayers()) {
-            if((player.name != null && player.name.equals(username)) || player.address.equals(remoteAddress))
-                throw new LoginException();
-        }
+        // The checks and the creation run as one command, so two players can not take the same slot or name
+        String address = remoteAddress;
+        String token = newToken();
+        LoginException refusal = gameManager.query(() -> {
+            if(gameManager.areAllPositionsFilled())
+                return new LoginException("This game is already full!");
+
+            for(Player player : gameManager.getGame().getPlayers()) {
+                if((player.name != null && player.name.equals(username)) || player.address.equals(address))
+                    return new LoginException();
+            }
 
-        gameManager.createPlayer(username, remoteAddress);
+            gameManager.createPlayer(username, address);
+            gameManager.getPlayer(username).token = token;
+            return null;
+        });
+        if (refusal != null)
+            throw refusal;
 
         logger.info("Logged in " + username + " from " + remoteAddress + "!");
+        return token;
+    }
 
+    private static String newToken() {
+        byte[] bytes = new byte[18];
+        tokens.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
 
     /**
@@ -96,57 +142,81 @@ public class BaseService {
      * @param username The username with which to log in the user
      * @throws         GameNotFoundException If the game can not be found
      * @throws         PlayerNotFoundException If the player does not exist
+     * @throws         IOException If the mailbox command fails to read a resource
      */
-    public void logout(String gameId, String username) throws GameNotFoundException, PlayerNotFoundException {
+    public void logout(String gameId, String username) throws GameNotFoundException, PlayerNotFoundException, IOException {
         GameManager gameManager = getGameManager(gameId);
-        Player player = gameManager.getPlayer(username);
-        gameManager.removePlayer(player);
+        Player player = gameManager.query(() -> {
+            Player loggedOut = gameManager.getPlayer(username);
+            gameManager.removePlayer(loggedOut);
+            return loggedOut;
+        });
         logger.info("Logged out user " + player.getName() + ", " + player.address);
     }
 
     /**
-     * Generate a JsonArray, containing JSON objects with the player name and ready status
+     * Get the names and ready status of all players in a game
      *
      * @param gameId The game ID for the target game
-     * @return       A player JsonArray
-     * @see          JsonArray
+     * @return       A players payload
+     * @see          PlayersPayload
      * @throws       GameNotFoundException If the game can not be found
+     * @throws       PlayerNotFoundException If the mailbox command fails to find a player
+     * @throws       IOException If the mailbox command fails to read a resource
      */
-    public JsonArray getAllPlayers(String gameId) throws GameNotFoundException {
-        List<Player> players = getGameManager(gameId).getGame().getPlayers();
-        JsonArray playerList = new JsonArray();
-        for (Player player : players) {
-            JsonObject playerReadyJson = new JsonObject();
-            playerReadyJson.addProperty("name", player.getName());
-            playerReadyJson.addProperty("ready", Boolean.toString(player.readyToSleep));
-            playerList.add(playerReadyJson);
-        }
-        return playerList;
+    public PlayersPayload getAllPlayers(String gameId) throws GameNotFoundException, PlayerNotFoundException, IOException {
+        GameManager gameManager = getGameManager(gameId);
+        return gameManager.query(() -> {
+            PlayersPayload playerList = new PlayersPayload();
+            for (Player player : gameManager.getGame().getPlayers()) {
+                playerList.add(player.getName(), player.readyToSleep);
+            }
+            return playerList;
+        });
     }
 
     /**
-     * Generate a JsonArray, containing JSON objects with all active game IDs and their players
+     * List the active games, as a serialized <u>DATA</u> type ServerMessage with a JSON array of their IDs, occupied
+     * slots and started status. The listing is read from the game directory and the serialized response is cached
+     * until the directory changes, so polling it does not touch the games.
      *
-     * @return       A game JsonArray
-     * @see          JsonArray
+     * @param openOnly Whether to list only the games which a player can still join
+     * @param started  Whether to list only the games which have started
+     * @param size     The number of player slots of the listed games, or 0 for any
+     * @param offset   The number of matching games to skip
+     * @param limit    The maximum number of games to list, or 0 for all
+     * @return         The serialized response
+     * @see            GameDirectory
      */
-    protected JsonArray getAllGames() {
-        Iterator<String> it = activeGames
-                                .keySet()
-                                .stream()
-                                .iterator();
+    protected String getAllGames(boolean openOnly, boolean started, int size, int offset, int limit) {
+        if (offset < 0 || limit < 0 || size < 0)
+            throw new IllegalArgumentException("The size, offset and limit can not be negative!");
+        if (openOnly && started)
+            throw new IllegalArgumentException("A started game can not be open!");
+        GameDirectory.Filter filter = openOnly ? GameDirectory.Filter.OPEN : started ? GameDirectory.Filter.STARTED : GameDirectory.Filter.ALL;
+
+        GameDirectory directory = activeGames.getDirectory();
+        String key = filter + "/" + size + "/" + offset + "/" + limit;
+        long version = directory.getVersion();
+        Listing cached = listings.get(key);
+        if (cached != null && cached.version == version)
+            return cached.response;
+
         JsonArray gameList = new JsonArray();
-        while(it.hasNext()) {
-            String next = it.next();
+        for (GameDirectory.Entry game : directory.list(filter, size, offset, limit == 0 ? Integer.MAX_VALUE : limit)) {
             JsonObject gamePlayersJson = new JsonObject();
-            gamePlayersJson.addProperty("players", activeGames.get(next).getGame().toString());
-            gamePlayersJson.addProperty("id", next);
-            gamePlayersJson.addProperty("started", activeGames.get(next).getGame().getStarted());
+            gamePlayersJson.addProperty("players", game.toString());
+            gamePlayersJson.addProperty("id", game.getId());
+            gamePlayersJson.addProperty("started", game.isStarted());
 
             gameList.add(gamePlayersJson);
-
         }
-        return gameList;
+        String response = MessageUtil.serialize(new ServerMessage(gameList, MessageType.DATA));
+
+        if (listings.size() >= MAX_CACHED_LISTINGS)
+            listings.clear();
+        listings.put(key, new Listing(version, response));
+        return response;
     }
 
     // Static methods
@@ -155,17 +225,20 @@ public class BaseService {
      * Delete all active games
      */
     public static void deleteAllGames() {
-        activeGames = new HashMap<>();
+        for (GameManager gameManager : activeGames.values()) {
+            gameManager.post(gameManager::close);
+        }
+        activeGames.clear();
         logger.info("Removed all games!");
     }
 
     /**
      * Get all the active games
      *
-     * @return The active games map object
+     * @return The active games registry
      * @see    #activeGames
      */
-    public static Map<String, GameManager> getActiveGames() {
+    public static GameRegistry getActiveGames() {
         return activeGames;
     }
 
@@ -191,9 +264,8 @@ public class BaseService {
      * @return        The game ID of the newly created game
      */
     protected static String createGame(String players) {
-        GameManager gameManager = new GameManager(Integer.parseInt(players));
+        GameManager gameManager = activeGames.create(Integer.parseInt(players));
         String gameId = gameManager.getGame().getID();
-        activeGames.put(gameId, gameManager);
         logger.info("Created game " + gameId);
         return gameId;
     }
@@ -205,8 +277,9 @@ public class BaseService {
      * @throws         GameNotFoundException If the game can not be found
      */
     protected static void deleteGame(String gameId) throws GameNotFoundException {
-        GameManager gameManager = getGameManager(gameId);
-        activeGames.remove(gameId, gameManager);
+        GameManager gameManager = activeGames.remove(gameId);
+        if (gameManager == null) throw new GameNotFoundException(gameId);
+        gameManager.post(gameManager::close);
         logger.info("Removed game " + gameId);
     }
 
@@ -1,26 +1,45 @@
 package com.akarakoutev.werewolves.net.mvc;
 
+import com.akarakoutev.werewolves.net.broadcast.Broadcaster;
+import com.akarakoutev.werewolves.net.broadcast.SessionRegistry;
+import com.akarakoutev.werewolves.net.message.Message;
 import com.akarakoutev.werewolves.net.message.MessageType;
 import com.akarakoutev.werewolves.net.message.MessageUtil;
 import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.message.payload.ChatPayload;
+import com.akarakoutev.werewolves.net.message.payload.ViewPayload;
 import com.akarakoutev.werewolves.net.exc.ExceptionUtil;
+import com.akarakoutev.werewolves.net.exc.PlayerNotFoundException;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
 /**
  * Controller class, handling all requests that are aimed at in-game mechanics. All communication is executed via
  * serialized Messages. All exception handling is executed via ExceptionUtil
+ * <br>
+ * The actions of the night loop are also mapped to STOMP destinations, so a client can send them over its open
+ * session instead of a separate HTTP request. The HTTP endpoints stay available. A STOMP action is only run for the
+ * player, to which the caller's session is bound; for a role's action, that is the owner of the role.
+ * <br>
+ * Chat messages, votes and targets are rate limited per player, over both HTTP and STOMP. A token is only taken once
+ * the player, who takes the action, is known to be in the game, or over STOMP, to be bound to the caller's session.
  *
  * @author Alberto Karakoutev
  * @see    ServerMessage
  * @see    MessageType
  * @see    MessageUtil
  * @see    ExceptionUtil
+ * @see    RateLimiter
  */
 @Controller
 @RequestMapping("game")
@@ -28,11 +47,17 @@ public class GameController {
 
     GameService gameService;
     BaseService baseService;
+    Broadcaster broadcaster;
+    RateLimiter rateLimiter;
+    SessionRegistry sessionRegistry;
 
     @Autowired
-    public GameController(GameService gameService, BaseService baseService) {
+    public GameController(GameService gameService, BaseService baseService, Broadcaster broadcaster, RateLimiter rateLimiter, SessionRegistry sessionRegistry) {
         this.gameService = gameService;
         this.baseService = baseService;
+        this.broadcaster = broadcaster;
+        this.rateLimiter = rateLimiter;
+        this.sessionRegistry = sessionRegistry;
     }
 
     /**
@@ -48,12 +73,7 @@ public class GameController {
         try {
             JsonObject requestContent = MessageUtil.deserialize(content);
             String gameId = requestContent.get("gameId").getAsString();
-            gameService.addPlayerToGameRoom(gameId, requestContent.get("username").getAsString());
-
-            if (gameService.gameIsReady(gameId)) {
-                gameService.setPlayerRoles(gameId);
-                gameService.applyNight(gameId);
-            }
+            gameService.enterGameRoom(gameId, requestContent.get("username").getAsString());
 
             return new ResponseEntity<>(MessageUtil.emptyMessage(), HttpStatus.OK);
         } catch (Exception e) {
@@ -73,11 +93,8 @@ public class GameController {
     @PostMapping(value = "/target", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> target(@RequestBody String content) {
         try {
-            JsonObject requestContent = MessageUtil.deserialize(content);
-            gameService.target(
-                    requestContent.get("gameId").getAsString(),
-                    requestContent.get("roleName").getAsString(),
-                    requestContent.get("targetName").getAsString());
+            JsonObject request = MessageUtil.deserialize(content);
+            target(request, gameService.getRoleOwner(request.get("gameId").getAsString(), request.get("roleName").getAsString()));
 
             return new ResponseEntity<>(MessageUtil.emptyMessage(), HttpStatus.OK);
         } catch (Exception e) {
@@ -96,10 +113,7 @@ public class GameController {
     @PutMapping(value = "/sleep", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> sleep(@RequestBody String content) {
         try {
-            JsonObject requestContent = MessageUtil.deserialize(content);
-            String gameId = requestContent.get("gameId").getAsString();
-            String username = requestContent.get("username").getAsString();
-            gameService.setReadyToSleep(gameId, username);
+            sleep(MessageUtil.deserialize(content));
 
             return new ResponseEntity<>(MessageUtil.emptyMessage(), HttpStatus.OK);
         } catch (Exception e) {
@@ -120,12 +134,7 @@ public class GameController {
     @PostMapping(value = "/setAnswer", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> answer(@RequestBody String content) {
         try {
-            JsonObject requestContent = MessageUtil.deserialize(content);
-            gameService.wakeRoleWithAnswer(
-                    requestContent.get("gameId").getAsString(),
-                    requestContent.get("roleName").getAsString(),
-                    requestContent.get("username").getAsString(),
-                    requestContent.get("answer").getAsBoolean());
+            answer(MessageUtil.deserialize(content));
 
             return new ResponseEntity<>(MessageUtil.emptyMessage(), HttpStatus.OK);
         } catch (Exception e) {
@@ -144,8 +153,7 @@ public class GameController {
     @PostMapping(value = "/wokenUp", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> wokenUp(@RequestBody String content) {
         try {
-            JsonObject requestContent = MessageUtil.deserialize(content);
-            gameService.wokenUp(requestContent.get("gameId").getAsString(), requestContent.get("role").getAsString());
+            wokenUp(MessageUtil.deserialize(content));
 
             return new ResponseEntity<>(MessageUtil.emptyMessage(), HttpStatus.OK);
         } catch (Exception e) {
@@ -166,13 +174,8 @@ public class GameController {
     @PutMapping(value = "/chat", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> addChatMessage(@RequestBody String content) {
         try {
-            JsonObject requestContent = MessageUtil.deserialize(content);
-            String gameId = requestContent.get("gameId").getAsString();
-            gameService.addChatMessage(
-                    gameId,
-                    requestContent.get("chatId").getAsString(),
-                    requestContent.get("message").getAsString(),
-                    requestContent.get("username").getAsString());
+            JsonObject request = MessageUtil.deserialize(content);
+            addChatMessage(request, player(request, "username"));
 
             return new ResponseEntity<>(MessageUtil.emptyMessage(), HttpStatus.OK);
         } catch (Exception e) {
@@ -180,6 +183,29 @@ public class GameController {
         }
     }
 
+    /**
+     * Get a page of a chat's history
+     *
+     * @param gameId The game ID for the target game
+     * @param chatId The ID of the chat
+     * @param since  The last sequence number, which the client already has
+     * @param limit  The maximum number of messages in the page
+     * @return       A <u>CHAT_HISTORY</u> type ServerMessage, containing the messages after <i>since</i>
+     */
+    @GetMapping("/{gameId}/chat/{chatId}")
+    public ResponseEntity<String> getChatHistory(@PathVariable String gameId, @PathVariable String chatId,
+                                                 @RequestParam(defaultValue = "0") long since,
+                                                 @RequestParam(defaultValue = "50") int limit) {
+        try {
+            ChatPayload history = gameService.getChatHistory(gameId, chatId, since, limit);
+            String response = MessageUtil.serialize(new ServerMessage(history, MessageType.CHAT_HISTORY));
+
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (Exception e) {
+            return ExceptionUtil.errorResponse(e);
+        }
+    }
+
     /**
      * Send a vote
      *
@@ -193,13 +219,8 @@ public class GameController {
     @PutMapping(value = "/vote", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> vote(@RequestBody String content) {
         try {
-            JsonObject requestContent = MessageUtil.deserialize(content);
-            String gameId = requestContent.get("gameId").getAsString();
-            gameService.vote(
-                    gameId,
-                    requestContent.get("voteId").getAsString(),
-                    requestContent.get("voter").getAsString(),
-                    requestContent.get("votee").getAsString());
+            JsonObject request = MessageUtil.deserialize(content);
+            vote(request, player(request, "voter"));
 
             return new ResponseEntity<>(MessageUtil.emptyMessage(), HttpStatus.OK);
         } catch (Exception e) {
@@ -207,4 +228,196 @@ public class GameController {
         }
     }
 
+    /**
+     * Get the public part of a game. The player's own sections are only sent to its bound session.
+     *
+     * @param gameId   The game ID for the target game
+     * @param username The name of the player
+     * @param since    The version of the client's last view, or 0 for the full view
+     * @return         A <u>VIEW</u> type ServerMessage, containing the sections which have changed after <i>since</i>
+     */
+    @GetMapping("/{gameId}/view/{username}")
+    public ResponseEntity<String> getView(@PathVariable String gameId, @PathVariable String username,
+                                          @RequestParam(defaultValue = "0") long since) {
+        try {
+            ViewPayload view = gameService.getView(gameId, username, since, false);
+            String response = MessageUtil.serialize(new ServerMessage(view, MessageType.VIEW));
+
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (Exception e) {
+            return ExceptionUtil.errorResponse(e);
+        }
+    }
+
+    /**
+     * Get the public messages, which a reconnected player has missed. The private ones are only replayed to its bound
+     * session.
+     *
+     * @param gameId   The game ID for the target game
+     * @param username The name of the reconnected player
+     * @param since    The last sequence number, which the player has seen
+     * @return         A <u>BATCH</u> type message with the missed messages, or a <u>RESYNC</u> type message if they are
+     *                 no longer available
+     */
+    @GetMapping("/{gameId}/replay/{username}")
+    public ResponseEntity<String> getReplay(@PathVariable String gameId, @PathVariable String username,
+                                            @RequestParam(defaultValue = "0") long since) {
+        try {
+            return new ResponseEntity<>(gameService.getReplay(gameId, username, since, false).toString(), HttpStatus.OK);
+        } catch (Exception e) {
+            return ExceptionUtil.errorResponse(e);
+        }
+    }
+
+    // STOMP equivalents of the in-game actions
+
+    /**
+     * @see #target(String)
+     */
+    @MessageMapping("/game/target/{gameId}")
+    public void target(@Payload Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+        call(message, gameId, headerAccessor, content -> gameService.getRoleOwner(gameId, content.get("roleName").getAsString()), this::target);
+    }
+
+    /**
+     * @see #sleep(String)
+     */
+    @MessageMapping("/game/sleep/{gameId}")
+    public void sleep(@Payload Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+        call(message, gameId, headerAccessor, content -> content.get("username").getAsString(), (content, player) -> sleep(content));
+    }
+
+    /**
+     * @see #answer(String)
+     */
+    @MessageMapping("/game/setAnswer/{gameId}")
+    public void answer(@Payload Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+        call(message, gameId, headerAccessor, content -> content.get("username").getAsString(), (content, player) -> answer(content));
+    }
+
+    /**
+     * @see #wokenUp(String)
+     */
+    @MessageMapping("/game/wokenUp/{gameId}")
+    public void wokenUp(@Payload Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+        call(message, gameId, headerAccessor, content -> gameService.getRoleOwner(gameId, content.get("role").getAsString()), (content, player) -> wokenUp(content));
+    }
+
+    /**
+     * @see #addChatMessage(String)
+     */
+    @MessageMapping("/game/chat/{gameId}")
+    public void addChatMessage(@Payload Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+        call(message, gameId, headerAccessor, content -> content.get("username").getAsString(), this::addChatMessage);
+    }
+
+    /**
+     * @see #vote(String)
+     */
+    @MessageMapping("/game/vote/{gameId}")
+    public void vote(@Payload Message message, @DestinationVariable String gameId, SimpMessageHeaderAccessor headerAccessor) {
+        call(message, gameId, headerAccessor, content -> content.get("voter").getAsString(), this::vote);
+    }
+
+    /**
+     * Run an action, which a client has sent over its STOMP session, and send the outcome back to that session only,
+     * to <i>/user/queue/result</i>. The content of the message is the same as the body of the HTTP request, except
+     * that the game ID is taken from the destination. The action is refused, unless the session is bound to the
+     * player, who takes it.
+     *
+     * @param message        The message
+     * <br><b>[Serialized]</b> <i>correlationId</i> - Any value, which the client uses to match the result to the action
+     * @param gameId         The game ID for the target game
+     * @param headerAccessor The headers of the message
+     * @param actor          Finds the player, who takes the action
+     * @param action         The action, which is given the player
+     * @see                  MessageType#RESULT
+     * @see                  SessionRegistry#isBound(String, String, String)
+     */
+    private void call(Message message, String gameId, SimpMessageHeaderAccessor headerAccessor, Actor actor, Action action) {
+        JsonObject content = message.getContent() != null && message.getContent().isJsonObject()
+                ? message.getContent().getAsJsonObject().deepCopy()
+                : new JsonObject();
+        JsonElement correlationId = content.get("correlationId");
+        content.addProperty("gameId", gameId);
+
+        String sessionId = headerAccessor.getSessionId();
+        JsonObject result;
+        try {
+            String player = actor.find(content);
+            if (!sessionRegistry.isBound(gameId, player, sessionId))
+                throw new PlayerNotFoundException("Player " + player + " is not bound to this session!");
+            action.run(content, player);
+            result = MessageUtil.toContent("code", Integer.toString(HttpStatus.OK.value()));
+        } catch (Exception e) {
+            result = ExceptionUtil.errorResponseJson(e);
+        }
+        if (correlationId != null)
+            result.add("correlationId", correlationId);
+
+        if (sessionId != null)
+            broadcaster.send(SessionRegistry.getSessionDestination(sessionId, SessionRegistry.RESULT_QUEUE), new ServerMessage(result, MessageType.RESULT));
+    }
+
+    @FunctionalInterface
+    private interface Actor {
+        String find(JsonObject content) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        void run(JsonObject content, String player) throws Exception;
+    }
+
+    /**
+     * Get a player, named in a request, once it is known to be in the game
+     */
+    private String player(JsonObject content, String key) throws Exception {
+        String player = content.get(key).getAsString();
+        gameService.requirePlayer(content.get("gameId").getAsString(), player);
+        return player;
+    }
+
+    private void target(JsonObject content, String owner) throws Exception {
+        rateLimiter.acquire(RateLimiter.Action.TARGET, content.get("gameId").getAsString(), owner);
+        gameService.target(
+                content.get("gameId").getAsString(),
+                content.get("roleName").getAsString(),
+                content.get("targetName").getAsString());
+    }
+
+    private void sleep(JsonObject content) throws Exception {
+        gameService.setReadyToSleep(content.get("gameId").getAsString(), content.get("username").getAsString());
+    }
+
+    private void answer(JsonObject content) throws Exception {
+        gameService.wakeRoleWithAnswer(
+                content.get("gameId").getAsString(),
+                content.get("roleName").getAsString(),
+                content.get("username").getAsString(),
+                content.get("answer").getAsBoolean());
+    }
+
+    private void wokenUp(JsonObject content) throws Exception {
+        gameService.wokenUp(content.get("gameId").getAsString(), content.get("role").getAsString());
+    }
+
+    private void addChatMessage(JsonObject content, String sender) throws Exception {
+        rateLimiter.acquire(RateLimiter.Action.CHAT, content.get("gameId").getAsString(), sender);
+        gameService.addChatMessage(
+                content.get("gameId").getAsString(),
+                content.get("chatId").getAsString(),
+                content.get("message").getAsString(),
+                sender);
+    }
+
+    private void vote(JsonObject content, String voter) throws Exception {
+        rateLimiter.acquire(RateLimiter.Action.VOTE, content.get("gameId").getAsString(), voter);
+        gameService.vote(
+                content.get("gameId").getAsString(),
+                content.get("voteId").getAsString(),
+                voter,
+                content.get("votee").getAsString());
+    }
+
 }
@@ -1,33 +1,44 @@
 package com.akarakoutev.werewolves.net.mvc;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import com.akarakoutev.werewolves.chat.Chat;
 import com.akarakoutev.werewolves.game.GameManager;
+import com.akarakoutev.werewolves.game.GameView;
+import com.akarakoutev.werewolves.game.ReplayBuffer;
 import com.akarakoutev.werewolves.roles.generic.Role;
 import com.akarakoutev.werewolves.roles.targeter.CultLeader;
 import com.akarakoutev.werewolves.roles.targeter.Vampire;
 import com.akarakoutev.werewolves.roles.targeter.Werewolf;
 import com.akarakoutev.werewolves.roles.wakeable.WakeableRole;
 import com.akarakoutev.werewolves.roles.targeter.TargeterRole;
+import com.akarakoutev.werewolves.net.broadcast.Broadcaster;
+import com.akarakoutev.werewolves.net.broadcast.SessionRegistry;
 import com.akarakoutev.werewolves.net.exc.*;
+import com.akarakoutev.werewolves.net.message.Frame;
 import com.akarakoutev.werewolves.net.message.MessageType;
 import com.akarakoutev.werewolves.net.message.MessageUtil;
 import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.message.payload.*;
 import com.akarakoutev.werewolves.vote.Vote;
-import com.google.gson.*;
+import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.akarakoutev.werewolves.player.Player;
 
 /**
  * A Service class, handling all the business logic that is executed during the in-game phase of the lifecycle.
+ * Every entry point runs on the mailbox of its game, so the commands of one game never overlap.
  *
  * @author Alberto Karakoutev
  * @see GameManager
@@ -37,10 +48,42 @@ import com.akarakoutev.werewolves.player.Player;
 public class GameService {
 
 	@Autowired
-	private SimpMessageSendingOperations sendingOperations;
+	private Broadcaster broadcaster;
+
+	@Autowired
+	private SessionRegistry sessionRegistry;
 
 	public static final Logger logger = Logger.getLogger(GameService.class.getName());
 
+	/**
+	 * The time, given to the players to see their roles, before the first role is awoken
+	 */
+	private static final long NIGHT_START_DELAY_SECONDS = 5;
+
+	/**
+	 * The time, given to a single role to take its turn, before it is skipped
+	 */
+	@Value("${werewolves.deadline.turn:60}")
+	private long turnDeadlineSeconds;
+
+	/**
+	 * The time, given to the werewolves or the vampires to agree on a target, before their turn is skipped
+	 */
+	@Value("${werewolves.deadline.night-vote:90}")
+	private long nightVoteDeadlineSeconds;
+
+	/**
+	 * The time, given to the village to lynch a player, before the ballots cast so far are counted
+	 */
+	@Value("${werewolves.deadline.lynch-vote:180}")
+	private long lynchVoteDeadlineSeconds;
+
+	/**
+	 * The time, for which a finished game is kept, before it is deleted
+	 */
+	@Value("${werewolves.deadline.game-over:60}")
+	private long gameOverRetentionSeconds;
+
 	@Autowired
 	public GameService() {
 	}
@@ -68,22 +111,24 @@ public class GameService {
 	 * <br><b>[Serialized]</b> <i>chat</i> - The current day chat
 	 * <br><b>[Serialized]</b> <i>vote</i> - The initialized lynch vote
 	 * <br><b>[Serialized]</b> <i>cycle</i> - The current day-night cycle
-	 * <br><b>[Serialized]</b> <i>players</i> - A JsonArray of all remaining players
+	 * <br><b>[Serialized]</b> <i>players</i> - All remaining players
 	 * <br><b>[Serialized]</b> <i>summary</i> - The summary object from the previous night
 	 * <br><b>[Serialized]</b> <i>message</i> - A text message
 	 * @see          	  GameManager#applyDay()
 	 * @see          	  #sendToGame(String, String, ServerMessage)
-	 * @see          	  JsonArray
+	 * @see          	  DayPayload
 	 */
 	private void day(GameManager gameManager) {
-		JsonObject summary = new JsonObject();
-		JsonArray deadList = new JsonArray();
+		List<String> deadList = new ArrayList<>();
+		String hagged = null;
+		String silenced = null;
 
 		String gameOver = gameManager.applyDay();
 		if (gameOver != null) {
-			JsonObject content = MessageUtil.toContent("message", gameOver);
-			ServerMessage gameOverMessage = new ServerMessage(content, MessageType.NOTIFY);
+			ServerMessage gameOverMessage = new ServerMessage(new TextPayload(gameOver), MessageType.NOTIFY);
 			sendToGame(gameManager.getGame().getID(), null, gameOverMessage);
+			scheduleGameRemoval(gameManager);
+			return;
 		}
 
 		Chat chat = gameManager.createChat(Chat.Type.DAY, UUID.randomUUID());
@@ -95,31 +140,25 @@ public class GameService {
 				continue;
 			}
 			if (p.is(TargeterRole.Effect.HAGGED)) {
-				summary.addProperty("hagged", p.getName());
+				hagged = p.getName();
 			}
 			if (p.is(TargeterRole.Effect.SILENCED)) {
-				summary.addProperty("silenced", p.getName());
+				silenced = p.getName();
 			}
 		}
 
 		gameManager.removeDeadPlayers();
 
-		summary.add("dead", deadList);
-		summary.addProperty("troublemaker", (gameManager.getGame().getTroublemakerNight() != null
-				&& gameManager.getGame().getTroublemakerNight() == gameManager.getGame().getNights()));
-
-		JsonObject content = new JsonObject();
-		JsonArray players = new JsonArray();
-		gameManager.getGame().getPlayers().forEach(player -> players.add(player.getName()));
-		content.add("players", players);
-		content.add("summary", summary);
-		content.add("vote", vote.serialize());
-		content.addProperty("cycle", chat.getCycle());
-		content.addProperty("chat", chat.getId().toString());
-		content.addProperty("message", "It is now day time!");
+		boolean troublemaker = gameManager.getGame().getTroublemakerNight() != null
+				&& gameManager.getGame().getTroublemakerNight() == gameManager.getGame().getNights();
+		List<String> players = gameManager.getGame().getPlayers().stream().map(Player::getName).collect(Collectors.toList());
 
+		DayPayload content = new DayPayload(players, deadList, hagged, silenced, troublemaker,
+				new VotePayload(vote), chat.getCycle(), chat.getId().toString(), "It is now day time!");
 		ServerMessage dayMessage = new ServerMessage(content, MessageType.DAY);
 		sendToGame(gameManager.getGame().getID(), null, dayMessage);
+
+		armLynchDeadline(gameManager, vote);
 	}
 
 	/**
@@ -148,11 +187,10 @@ public class GameService {
 			if (randomRole.hasQuestion()) {
 				if (randomRole.canQuestionBeAsked()) {
 					randomRole.state = WakeableRole.State.WAKING;
-					JsonObject content = MessageUtil.toContent(
-							"question", randomRole.question.q,
-							"active", Boolean.toString(randomRole == randomRole.owner.roleA));
+					QuestionPayload content = new QuestionPayload(randomRole.question.q, randomRole == randomRole.owner.roleA);
 					ServerMessage questionMessage = new ServerMessage(content, MessageType.QUESTION);
 					sendToGame(gameManager.getGame().getID(), randomRole.owner.getName(), questionMessage);
+					armTurnDeadline(gameManager, randomRole);
 					return;
 				}
 			}
@@ -168,26 +206,21 @@ public class GameService {
 	}
 
 	/**
-	 * Broadcast a message to the <b>/game</b> topic subscribers. Send the message to a private topic if the username
-	 * parameter is not null.
+	 * Broadcast a message to the <b>/game</b> topic subscribers. Send the message to the player's session if the
+	 * username parameter is not null. A player, which is not bound to a session, gets the message only on replay.
 	 *
 	 * @param gameId   The game ID for the target game
 	 * @param username The username of the receiver of the message
 	 * @param message  The message object that is sent
 	 * @see            ServerMessage
 	 */
-	private void sendToGame(String gameId, String username, ServerMessage message) {
-		if(username == null) {
-			username = "";
-		} else {
-			username = "/" + username;
-		}
-		sendingOperations.convertAndSend("/topic/game/"+gameId+username, MessageUtil.serialize(message));
+	public void sendToGame(String gameId, String username, ServerMessage message) {
+		send(gameTopic(gameId, username), gameDestination(gameId, username), gameId, message);
 	}
 
 	/**
-	 * Broadcast a message to the <b>/lobby</b> topic subscribers. Send the message to a private topic if the username
-	 * parameter is not null.
+	 * Broadcast a message to the <b>/lobby</b> topic subscribers. Send the message to the player's session if the
+	 * username parameter is not null. A player, which is not bound to a session, gets the message only on replay.
 	 *
 	 * @param gameId   The game ID for the target game
 	 * @param username The username of the receiver of the message
@@ -195,12 +228,186 @@ public class GameService {
 	 * @see            ServerMessage
 	 */
 	public void sendToLobby(String gameId, String username, ServerMessage message) {
-		if(username == null) {
-			username = "";
+		send(lobbyTopic(gameId, username), lobbyDestination(gameId, username), gameId, message);
+	}
+
+	/**
+	 * Send a message to a topic of a game. While the game exists, the message is sequenced and kept for replay under
+	 * the topic, even if it is delivered to a session, so a reconnecting player gets it back on any session.
+	 *
+	 * @param topic       The topic
+	 * @param destination The topic, the session destination of a private message, or null if the message is only
+	 *                    kept for replay
+	 * @param gameId      The game ID for the target game
+	 * @param message     The message object that is sent
+	 * @see               ReplayBuffer
+	 */
+	private void send(String topic, String destination, String gameId, ServerMessage message) {
+		GameManager gameManager = BaseService.getActiveGames().get(gameId);
+		if (gameManager == null) {
+			if (destination != null)
+				broadcaster.send(destination, message);
+		} else if (destination == null) {
+			gameManager.getReplayBuffer().record(topic, seq -> broadcaster.encode(message.withSeq(seq)));
 		} else {
-			username = "/" + username;
+			broadcaster.send(topic, destination, message, gameManager.getReplayBuffer());
+		}
+	}
+
+	/**
+	 * Get the destination of a player's private game messages
+	 *
+	 * @param gameId   The game ID for the target game
+	 * @param username The name of the player, or null for the public game topic
+	 * @return         The player's session destination, or null if the player is not bound to a session, which
+	 *                 subscribes to the session queue
+	 * @see            SessionRegistry
+	 */
+	public String gameDestination(String gameId, String username) {
+		if (username == null)
+			return gameTopic(gameId, null);
+		return sessionRegistry.getDestination(gameId, username, SessionRegistry.GAME_QUEUE);
+	}
+
+	/**
+	 * Get the destination of a player's private lobby messages
+	 *
+	 * @param gameId   The game ID for the target game
+	 * @param username The name of the player, or null for the public lobby topic
+	 * @return         The player's session destination, or null if the player is not bound to a session, which
+	 *                 subscribes to the session queue
+	 * @see            SessionRegistry
+	 */
+	public String lobbyDestination(String gameId, String username) {
+		if (username == null)
+			return lobbyTopic(gameId, null);
+		return sessionRegistry.getDestination(gameId, username, SessionRegistry.LOBBY_QUEUE);
+	}
+
+	/**
+	 * Bind a player of a game to the session of a caller
+	 *
+	 * @param gameId    The game ID for the target game
+	 * @param username  The name of the player
+	 * @param token     The token, which the player was given on login
+	 * @param sessionId The WebSocket session ID of the caller
+	 * @return          Whether the player is bound to the session. A name, which is not a player of the game, a wrong
+	 *                  token, or a player, which is bound to another session, is refused.
+	 * @see             BaseService#login
+	 * @see             SessionRegistry#register(String, String, String)
+	 */
+	public boolean bindSession(String gameId, String username, String token, String sessionId) {
+		GameManager gameManager = BaseService.getActiveGames().get(gameId);
+		if (gameManager == null || username == null || token == null)
+			return false;
+		byte[] presented = token.getBytes(StandardCharsets.UTF_8);
+		boolean player;
+		try {
+			player = gameManager.query(() -> gameManager.getGame().getPlayers().stream()
+					.anyMatch(p -> username.equals(p.getName()) && p.token != null
+							&& MessageDigest.isEqual(presented, p.token.getBytes(StandardCharsets.UTF_8))));
+		} catch (Exception e) {
+			return false;
+		}
+		return player && sessionRegistry.register(gameId, username, sessionId);
+	}
+
+	/**
+	 * Check that a player is in a game
+	 *
+	 * @param gameId   The game ID for the target game
+	 * @param username The name of the player
+	 * @throws 		   GameNotFoundException   If the game does not exist
+	 * @throws 		   PlayerNotFoundException If the player does not exist
+	 * @throws 		   IOException 		       If a resource does not exist
+	 */
+	public void requirePlayer(String gameId, String username) throws GameNotFoundException, PlayerNotFoundException, IOException {
+		GameManager gameManager = getGameManager(gameId);
+		gameManager.query(() -> gameManager.getPlayer(username));
+	}
+
+	/**
+	 * Get the player, who owns a role
+	 *
+	 * @param gameId   The game ID for the target game
+	 * @param roleName The name of the role
+	 * @return         The name of the role's owner
+	 * @throws 		   GameNotFoundException   If the game does not exist
+	 * @throws 		   PlayerNotFoundException If no player has the role, e.g. because the game has not started
+	 * @throws 		   IOException 		       If a resource does not exist
+	 */
+	public String getRoleOwner(String gameId, String roleName) throws GameNotFoundException, PlayerNotFoundException, IOException {
+		GameManager gameManager = getGameManager(gameId);
+		Role.RoleName name = Role.RoleName.from(roleName);
+		return gameManager.query(() -> {
+			Role role = gameManager.getGame().getStarted() ? gameManager.getRole(name) : null;
+			if (role == null || role.owner == null)
+				throw new PlayerNotFoundException("No player has the role " + roleName + "!");
+			return role.owner.getName();
+		});
+	}
+
+	private static String gameTopic(String gameId, String username) {
+		return "/topic/game/" + gameId + (username == null ? "" : "/" + username);
+	}
+
+	private static String lobbyTopic(String gameId, String username) {
+		return "/topic/lobby/" + gameId + (username == null ? "" : "/" + username);
+	}
+
+	/**
+	 * Get the part of a game, which a player may see. With a version, only the sections which have changed since are
+	 * returned, so a client can poll cheaply or catch up after a reconnect.
+	 *
+	 * @param gameId   The game ID for the target game
+	 * @param username The name of the player
+	 * @param since    The version of the client's last view, or 0 for the full view
+	 * @param own      Whether the caller is the player itself, e.g. its bound session. Otherwise only the public view is
+	 *                 returned, without the player's roles and team chats and votes.
+	 * @return         A view payload
+	 * @throws 		   PlayerNotFoundException If the player does not exist
+	 * @throws 		   GameNotFoundException   If the game does not exist
+	 * @throws 		   IOException 		    If a resource does not exist
+	 * @see            GameView
+	 */
+	public ViewPayload getView(String gameId, String username, long since, boolean own) throws GameNotFoundException, PlayerNotFoundException, IOException {
+		GameManager gameManager = getGameManager(gameId);
+		return gameManager.query(() -> {
+			Player player = gameManager.getPlayer(username);
+			return own ? gameManager.getView().render(player, since) : gameManager.getView().renderPublic(since);
+		});
+	}
+
+	/**
+	 * Get the messages, which a player has missed while disconnected. Those are the messages sent to the public and to
+	 * the player's own game and lobby topics after the last sequence number the player has seen.
+	 *
+	 * @param gameId   The game ID for the target game
+	 * @param username The name of the reconnecting player
+	 * @param since    The last sequence number, which the player has seen
+	 * @param own      Whether the caller is the player itself, e.g. its bound session. Otherwise only the messages of
+	 *                 the public topics are returned.
+	 * @return         A <u>BATCH</u> frame with the missed messages in order, or a <u>RESYNC</u> frame if some of them
+	 *                 are no longer kept and the player has to rebuild its state
+	 * @throws 		   PlayerNotFoundException If the player does not exist
+	 * @throws 		   GameNotFoundException   If the game does not exist
+	 * @throws 		   IOException 		    If a resource does not exist
+	 * @see            ReplayBuffer#replay(long, java.util.Collection)
+	 */
+	public Frame getReplay(String gameId, String username, long since, boolean own) throws GameNotFoundException, PlayerNotFoundException, IOException {
+		GameManager gameManager = getGameManager(gameId);
+		gameManager.query(() -> gameManager.getPlayer(username));
+
+		ReplayBuffer replayBuffer = gameManager.getReplayBuffer();
+		List<String> topics = own
+				? List.of(gameTopic(gameId, null), gameTopic(gameId, username), lobbyTopic(gameId, null), lobbyTopic(gameId, username))
+				: List.of(gameTopic(gameId, null), lobbyTopic(gameId, null));
+		List<Frame> missed = replayBuffer.replay(since, topics);
+		if (missed == null) {
+			JsonObject content = MessageUtil.toContent("seq", String.valueOf(replayBuffer.getLastSeq()));
+			return broadcaster.encode(new ServerMessage(content, MessageType.RESYNC));
 		}
-		sendingOperations.convertAndSend("/topic/lobby/"+gameId+username, MessageUtil.serialize(message));
+		return Frame.batch(missed);
 	}
 
 
@@ -223,28 +430,21 @@ public class GameService {
 		if (gameManager.getGame().getPlayers().stream().filter(Player::isWolf).anyMatch(player -> ((WakeableRole) player.roleA).state == WakeableRole.State.AWOKEN))
 			return false;
 
-		JsonObject content = new JsonObject();
+		int targetCount = 1;
 		if (gameManager.getGame().getNights() > 1
 				&& gameManager.getLastLynched() != null
 				&& gameManager.getLastLynched().roleA.name.equals(Role.RoleName.WOLF_CUB)) {
-			content.addProperty("targetCount", 2);
-		} else {
-			content.addProperty("targetCount", 1);
+			targetCount = 2;
 		}
 
 		List<Player> wolves = gameManager.getGame().getPlayers().stream().filter(Player::isWolf).collect(Collectors.toList());
-
-		JsonArray wolvesJson = new JsonArray();
-		wolves.forEach(wolf -> wolvesJson.add(wolf.getName()));
-		content.add("team", wolvesJson);
-
 		Player firstWolf = wolves.get(0);
-		content.addProperty("voter", firstWolf.getName());
 
 		Chat wolfChat = gameManager.createChat(Chat.Type.WEREWOLVES, UUID.randomUUID());
 		Vote wolfVote = gameManager.createVote(Vote.Type.WEREWOLVES, UUID.randomUUID(), firstWolf);
-		content.add("chat", wolfChat.serialize());
-		content.add("vote", wolfVote.serialize());
+		WakeMultiplePayload content = new WakeMultiplePayload(targetCount,
+				wolves.stream().map(Player::getName).collect(Collectors.toList()),
+				firstWolf.getName(), ChatPayload.latest(wolfChat), new VotePayload(wolfVote));
 
 		for (Player wolf :  wolves) {
 			WakeableRole wolfRole = (WakeableRole) wolf.roleA;
@@ -254,11 +454,11 @@ public class GameService {
 
 			logger.info("Waking Targeter role: " +  wolfRole.name);
 			String message =  wolfRole.wake();
-			content.addProperty("message", message);
-			ServerMessage wakeMessage = new ServerMessage(content, MessageType.WAKE_MULTIPLE);
+			ServerMessage wakeMessage = new ServerMessage(content.withMessage(message), MessageType.WAKE_MULTIPLE);
 			sendToGame(gameManager.getGame().getID(), wolfRole.owner.getName(), wakeMessage);
 		}
 
+		armTeamDeadline(gameManager, Player::isWolf, wolfVote);
 		return true;
 	}
 
@@ -281,23 +481,14 @@ public class GameService {
 		if (gameManager.getGame().getPlayers().stream().filter(Player::isVamp).anyMatch(player -> ((WakeableRole) player.roleA).state == WakeableRole.State.AWOKEN))
 			return false;
 
-		JsonObject content = new JsonObject();
-		content.addProperty("targetCount", 1);
-
 		List<Player> vamps = gameManager.getGame().getPlayers().stream().filter(Player::isVamp).collect(Collectors.toList());
-
-		JsonArray vampsJson = new JsonArray();
-		vamps.forEach(vamp -> vampsJson.add(vamp.getName()));
-		content.add("team", vampsJson);
-
 		Player firstVamp = vamps.get(0);
-		content.addProperty("voter", firstVamp.getName());
 
 		Chat vampChat = gameManager.createChat(Chat.Type.VAMPIRES, UUID.randomUUID());
 		Vote vampVote = gameManager.createVote(Vote.Type.VAMPIRES, UUID.randomUUID(), firstVamp);
-
-		content.add("chat", vampChat.serialize());
-		content.add("vote", vampVote.serialize());
+		WakeMultiplePayload content = new WakeMultiplePayload(1,
+				vamps.stream().map(Player::getName).collect(Collectors.toList()),
+				firstVamp.getName(), ChatPayload.latest(vampChat), new VotePayload(vampVote));
 
 		for (Player vamp : vamps) {
 			WakeableRole vampRole = (WakeableRole) vamp.roleA;
@@ -307,11 +498,11 @@ public class GameService {
 
 			logger.info("Waking Targeter role: " +  vampRole.name);
 			String message =  vampRole.wake();
-			content.addProperty("message", message);
-			ServerMessage wakeMessage = new ServerMessage(content, MessageType.WAKE_MULTIPLE);
+			ServerMessage wakeMessage = new ServerMessage(content.withMessage(message), MessageType.WAKE_MULTIPLE);
 			sendToGame(gameManager.getGame().getID(), vampRole.owner.getName(), wakeMessage);
 		}
 
+		armTeamDeadline(gameManager, Player::isVamp, vampVote);
 		return true;
 	}
 
@@ -320,13 +511,13 @@ public class GameService {
 	 *
 	 * @param gameManager The game manager of an active game
 	 * @param role 		  The targeter role to be awoken
-	 * <br><b>[Serialized]</b> <i>list</i> - A JsonArray of all active players in the game players
+	 * <br><b>[Serialized]</b> <i>list</i> - All active players in the game
 	 * <br><b>[Serialized]</b> <i>role</i> - The awoken role type
 	 * <br><b>[Serialized]</b> <i>message</i> - The message text
 	 * <br><b>[Serialized]</b> <i>activeRole</i> - Whether the awoken role is active
 	 * <br><b>[Serialized]</b> <i>targetCount</i> - The number of targets to be selected
 	 * @see            	  TargeterRole
-	 * @see            	  JsonArray
+	 * @see            	  WakePayload
 	 */
 	private void wakeTargeterRole(GameManager gameManager, TargeterRole role) {
 		// Check if the role has used up its ability
@@ -344,22 +535,17 @@ public class GameService {
 
 		logger.info("Waking Targeter role: " + role.name);
 		String message = role.wake();
-		JsonObject content = new JsonObject();
-		JsonArray list = new JsonArray();
-		gameManager
+		List<String> list = gameManager
 				.getGame()
 				.getPlayers()
 				.stream()
 				//.filter(player -> player.getName().equals(role.owner.getName()))
-				.forEach(player -> list.add(player.getName()));
-		content.add("list", list);
-		content.addProperty("message", message);
-		content.addProperty("role", "targeter");
-		content.addProperty("targetCount", role.getTargetCount());
-		content.addProperty("awokenRole", role.name.name());
-		content.addProperty("canCancelTurn", role.canCancelTurn);
+				.map(Player::getName)
+				.collect(Collectors.toList());
+		WakePayload content = WakePayload.targeter(message, role.name.name(), list, role.getTargetCount(), role.canCancelTurn);
 		ServerMessage wakeMessage = new ServerMessage(content, MessageType.WAKE);
 		sendToGame(gameManager.getGame().getID(), role.owner.getName(), wakeMessage);
+		armTurnDeadline(gameManager, role);
 	}
 
 	/**
@@ -370,19 +556,17 @@ public class GameService {
 	 * <br><b>[Serialized]</b> <i>role</i> - The awoken role type
 	 * <br><b>[Serialized]</b> <i>message</i> - The message text
 	 * @see            	  WakeableRole
-	 * @see            	  MessageUtil
+	 * @see            	  WakePayload
 	 */
 	private void wakeWakeableRole(GameManager gameManager, WakeableRole role) {
 		logger.info("Waking Wakeable role: " + role.name);
 		Player player = role.owner;
 		boolean activeAwoken = role == player.roleA;
 		String message = role.wake();
-		JsonObject content = MessageUtil.toContent(
-				"message", message,
-				"role", "wakeable",
-				"awokenRole", (activeAwoken) ? player.roleA.name.name() : player.roleP.name.name());
+		WakePayload content = WakePayload.wakeable(message, (activeAwoken) ? player.roleA.name.name() : player.roleP.name.name());
 		ServerMessage wakeMessage = new ServerMessage(content, MessageType.WAKE);
 		sendToGame(gameManager.getGame().getID(), role.owner.getName(), wakeMessage);
+		armTurnDeadline(gameManager, role);
 	}
 
 	/**
@@ -396,9 +580,9 @@ public class GameService {
 		if (role.owner.is(TargeterRole.Effect.CULT)) {
 			if (role == role.owner.roleA) {
 				String message = "You are part of the cult and can not use your roles!";
-				JsonObject content = MessageUtil.toContent("message", message, "awokenRole", role.name.name());
-				ServerMessage cultMessage = new ServerMessage(content, MessageType.WAKE);
+				ServerMessage cultMessage = new ServerMessage(WakePayload.notice(message, role.name.name()), MessageType.WAKE);
 				sendToGame(gameManager.getGame().getID(), role.owner.getName(), cultMessage);
+				armTurnDeadline(gameManager, role);
 				return true;
 			}
 		}
@@ -408,7 +592,7 @@ public class GameService {
 
 	/**
 	 * Cast a vote for a specific vote instance. If a lynch vote is complete, calculate the results and broadcast them using
-	 * a <U>LYNCH</U> type message
+	 * a <U>LYNCH</U> type message. A ballot on a closed vote, or a night ballot of a player who is not awake, is ignored.
 	 *
 	 * @param gameId   The game ID for the target game
 	 * @param idStr    The string ID of the specific vote
@@ -418,59 +602,174 @@ public class GameService {
 	 * <br><b>[Serialized]</b> <i>lynched</i> - The player who is lynched on that day
 	 * @throws 		   PlayerNotFoundException If the voter or votee do not exist
 	 * @throws 		   GameNotFoundException   If the game does not exist
+	 * @throws 		   IOException 		       If a resource does not exist
 	 * @see            Vote
 	 */
-	protected void vote(String gameId, String idStr, String voterStr, String voteeStr) throws PlayerNotFoundException, GameNotFoundException {
+	protected void vote(String gameId, String idStr, String voterStr, String voteeStr) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		GameManager gameManager = getGameManager(gameId);
-		Player voter = gameManager.getPlayer(voterStr);
-		UUID id = UUID.fromString(idStr);
+		gameManager.execute(() -> {
+			Player voter = gameManager.getPlayer(voterStr);
+			UUID id = UUID.fromString(idStr);
 
-		Vote vote = gameManager.getGame().getVotes().get(id);
-
-		if (vote.getType() == Vote.Type.LYNCH) {
-			Player votee0 = gameManager.getPlayer(voteeStr.split("_")[0]);
-			if (voteeStr.contains("_")) {
-				Player votee1 = gameManager.getPlayer(voteeStr.split("_")[1]);
-				vote.setVote(voter, List.of(votee0, votee1));
-			} else {
-				vote.setVote(voter, List.of(votee0));
+			Vote vote = gameManager.getGame().getVotes().get(id);
+			if (vote == null || vote.isClosed()) {
+				logger.info(voterStr + " has voted on a closed vote (Game " + gameId + ")");
+				return;
 			}
-			if (vote.isComplete()) {
-				Player mostVoted = vote.getMostVoted();
-				if (mostVoted.roleP.name == Role.RoleName.PRINCE) {
-					JsonObject content = MessageUtil.toContent("message", mostVoted.getName() + " is the Prince and can not be lynched!");
-					ServerMessage princeMessage = new ServerMessage(content, MessageType.NOTIFY);
-					sendToGame(gameId, null, princeMessage);
-					return;
+
+			if (vote.getType() == Vote.Type.LYNCH) {
+				Player votee0 = gameManager.getPlayer(voteeStr.split("_")[0]);
+				if (voteeStr.contains("_")) {
+					Player votee1 = gameManager.getPlayer(voteeStr.split("_")[1]);
+					vote.setVote(voter, List.of(votee0, votee1));
+				} else {
+					vote.setVote(voter, List.of(votee0));
 				}
-				Player vampedVotee = vote.getVampedVotee();
-				if (vampedVotee != null) {
-					JsonObject content = MessageUtil.toContent("lynched", vampedVotee.getName());
-					ServerMessage vampedLynchMessage = new ServerMessage(content, MessageType.LYNCH);
-					sendToGame(gameId, null, vampedLynchMessage);
-					gameManager.removePlayer(vampedVotee);
+				if (vote.isComplete() && !vote.isClosed()) {
+					lynch(gameManager, vote);
 				}
-
-				gameManager.addLynchedPlayer(mostVoted);
-				JsonObject content = MessageUtil.toContent("lynched", mostVoted.getName());
-				ServerMessage lynchMessage = new ServerMessage(content, MessageType.LYNCH);
-				sendToGame(gameId, null, lynchMessage);
-				gameManager.removePlayer(mostVoted);
+			} else if (!(voter.roleA instanceof WakeableRole) || ((WakeableRole) voter.roleA).state != WakeableRole.State.WAKING) {
+				logger.info(voterStr + " has voted, but is not awake (Game " + gameId + ")");
+			} else if (vote.getType() == Vote.Type.WEREWOLVES){
+				vote.close();
+				ServerMessage message = new ServerMessage(MessageType.HIDE_WAKE_MULTIPLE);
+				for (Player wolf : gameManager.getGame().getPlayers().stream().filter(Player::isWolf).collect(Collectors.toList())) {
+					sendToGame(gameId, wolf.getName(), message);
+				}
+				target(gameId, voter.roleA.name.name(), voteeStr);
+			} else if (vote.getType() == Vote.Type.VAMPIRES){
+				vote.close();
+				ServerMessage message = new ServerMessage(MessageType.HIDE_WAKE_MULTIPLE);
+				for (Player vamp : gameManager.getGame().getPlayers().stream().filter(Player::isVamp).collect(Collectors.toList())) {
+					sendToGame(gameId, vamp.getName(), message);
+				}
+				target(gameId, Role.RoleName.VAMPIRE.name(), voteeStr);
 			}
-		} else if (vote.getType() == Vote.Type.WEREWOLVES){
-			ServerMessage message = new ServerMessage(MessageType.HIDE_WAKE_MULTIPLE);
-			for (Player wolf : gameManager.getGame().getPlayers().stream().filter(Player::isWolf).collect(Collectors.toList())) {
-				sendToGame(gameId, wolf.getName(), message);
+		});
+	}
+
+	/**
+	 * Close a lynch vote and apply its result. Broadcast the result using a <U>LYNCH</U> type message
+	 *
+	 * @param gameManager The game manager of an active game
+	 * @param vote        The lynch vote
+	 * <br><b>[Serialized]</b> <i>lynched</i> - The player who is lynched on that day
+	 * @see               Vote
+	 */
+	private void lynch(GameManager gameManager, Vote vote) {
+		String gameId = gameManager.getGame().getID();
+		vote.close();
+		gameManager.clearPhaseDeadline();
+
+		Player mostVoted = vote.getMostVoted();
+		if (mostVoted.roleP.name == Role.RoleName.PRINCE) {
+			TextPayload content = new TextPayload(mostVoted.getName() + " is the Prince and can not be lynched!");
+			ServerMessage princeMessage = new ServerMessage(content, MessageType.NOTIFY);
+			sendToGame(gameId, null, princeMessage);
+			return;
+		}
+		Player vampedVotee = vote.getVampedVotee();
+		if (vampedVotee != null) {
+			ServerMessage vampedLynchMessage = new ServerMessage(new LynchPayload(vampedVotee.getName()), MessageType.LYNCH);
+			sendToGame(gameId, null, vampedLynchMessage);
+			gameManager.removePlayer(vampedVotee);
+		}
+
+		gameManager.addLynchedPlayer(mostVoted);
+		ServerMessage lynchMessage = new ServerMessage(new LynchPayload(mostVoted.getName()), MessageType.LYNCH);
+		sendToGame(gameId, null, lynchMessage);
+		gameManager.removePlayer(mostVoted);
+	}
+
+	/**
+	 * Give a role a limited time to take its turn. When the time is up and the role is still awake, skip its turn
+	 * and move on with the night.
+	 *
+	 * @param gameManager The game manager of an active game
+	 * @param role        The awoken role
+	 * @see               GameManager#setPhaseDeadline(long, com.akarakoutev.werewolves.game.GameMailbox.Action)
+	 */
+	private void armTurnDeadline(GameManager gameManager, WakeableRole role) {
+		int night = gameManager.getGame().getNights();
+		gameManager.setPhaseDeadline(turnDeadlineSeconds, () -> {
+			if (gameManager.getGame().getDay() || gameManager.getGame().getNights() != night
+					|| role.state != WakeableRole.State.WAKING)
+				return;
+
+			logger.info("The turn of " + role.name + " has expired (Game " + gameManager.getGame().getID() + ")");
+			role.state = WakeableRole.State.AWOKEN;
+			ServerMessage expiredMessage = new ServerMessage(new TextPayload("Your turn has expired!"), MessageType.NOTIFY);
+			sendToGame(gameManager.getGame().getID(), role.owner.getName(), expiredMessage);
+			checkDay(gameManager);
+		});
+	}
+
+	/**
+	 * Give a team a limited time to agree on a target. When the time is up and the team is still awake, the team
+	 * targets nobody on this night and its vote is closed, so a late ballot is ignored.
+	 *
+	 * @param gameManager The game manager of an active game
+	 * @param member      Whether a player is part of the team
+	 * @param vote        The night vote of the team
+	 * @see               #wakeWerewolves(GameManager)
+	 * @see               #wakeVampires(GameManager)
+	 */
+	private void armTeamDeadline(GameManager gameManager, Predicate<Player> member, Vote vote) {
+		int night = gameManager.getGame().getNights();
+		gameManager.setPhaseDeadline(nightVoteDeadlineSeconds, () -> {
+			if (vote.isClosed() || gameManager.getGame().getDay() || gameManager.getGame().getNights() != night)
+				return;
+			List<Player> team = gameManager.getGame().getPlayers().stream().filter(member).collect(Collectors.toList());
+			if (team.stream().noneMatch(player -> ((WakeableRole) player.roleA).state == WakeableRole.State.WAKING))
+				return;
+
+			logger.info("The night vote has expired (Game " + gameManager.getGame().getID() + ")");
+			vote.close();
+			ServerMessage hideMessage = new ServerMessage(MessageType.HIDE_WAKE_MULTIPLE);
+			for (Player player : team) {
+				((WakeableRole) player.roleA).state = WakeableRole.State.AWOKEN;
+				sendToGame(gameManager.getGame().getID(), player.getName(), hideMessage);
 			}
-			target(gameId, voter.roleA.name.name(), voteeStr);
-		} else if (vote.getType() == Vote.Type.VAMPIRES){
-			ServerMessage message = new ServerMessage(MessageType.HIDE_WAKE_MULTIPLE);
-			for (Player vamp : gameManager.getGame().getPlayers().stream().filter(Player::isVamp).collect(Collectors.toList())) {
-				sendToGame(gameId, vamp.getName(), message);
+			checkDay(gameManager);
+		});
+	}
+
+	/**
+	 * Give the village a limited time to lynch a player. When the time is up, count the ballots cast so far. If nobody
+	 * has voted, nobody is lynched.
+	 *
+	 * @param gameManager The game manager of an active game
+	 * @param vote        The lynch vote of the day
+	 * @see               #lynch(GameManager, Vote)
+	 */
+	private void armLynchDeadline(GameManager gameManager, Vote vote) {
+		gameManager.setPhaseDeadline(lynchVoteDeadlineSeconds, () -> {
+			if (vote.isClosed())
+				return;
+
+			logger.info("The lynch vote has expired (Game " + gameManager.getGame().getID() + ")");
+			if (vote.hasBallots()) {
+				lynch(gameManager, vote);
+			} else {
+				vote.close();
+				ServerMessage noLynchMessage = new ServerMessage(new TextPayload("Nobody was lynched today!"), MessageType.NOTIFY);
+				sendToGame(gameManager.getGame().getID(), null, noLynchMessage);
 			}
-			target(gameId, Role.RoleName.VAMPIRE.name(), voteeStr);
-		}
+		});
+	}
 
+	/**
+	 * Delete a finished game, once the players have had the time to see the result
+	 *
+	 * @param gameManager The game manager of a finished game
+	 */
+	private void scheduleGameRemoval(GameManager gameManager) {
+		String gameId = gameManager.getGame().getID();
+		gameManager.schedule(gameOverRetentionSeconds, TimeUnit.SECONDS, () -> {
+			if (BaseService.getActiveGames().get(gameId) == gameManager) {
+				BaseService.deleteGame(gameId);
+			}
+		});
 	}
 
 	/**
@@ -478,21 +777,25 @@ public class GameService {
 	 *
 	 * @param gameId The game ID for the target game
 	 * @throws 		 GameNotFoundException   If the game does not exist
+	 * @throws 		 PlayerNotFoundException If a player does not exist
+	 * @throws 		 IOException   		     If a resource does not exist
 	 * @see          #checkDay(GameManager)
 	 */
-	protected void wokenUp(String gameId, String awokenRole) throws GameNotFoundException {
+	protected void wokenUp(String gameId, String awokenRole) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		GameManager gameManager = getGameManager(gameId);
-		Role role = gameManager.getRole(Role.RoleName.from(awokenRole));
-		((WakeableRole) role).state = WakeableRole.State.AWOKEN;
-		if (!gameManager.getGame().getDay()) {
-			checkDay(gameManager);
-		}
+		gameManager.execute(() -> {
+			Role role = gameManager.getRole(Role.RoleName.from(awokenRole));
+			((WakeableRole) role).state = WakeableRole.State.AWOKEN;
+			if (!gameManager.getGame().getDay()) {
+				checkDay(gameManager);
+			}
+		});
 	}
 
 	/**
 	 * Set nighttime. Broadcast a <u>NIGHT</u> type message to everyone. Call the <i>applyNight()</i> method from the
-	 * game manager. Broadcast the roles to each player in case of any changes with a <u>ROLES</u> type message. Begin
-	 * night actions.
+	 * game manager. Broadcast the roles to each player in case of any changes with a <u>ROLES</u> type message. Schedule
+	 * the night actions on the phase timer and return right away.
 	 *
 	 * @param gameId The game ID for the target game
 	 * <br><b>[Serialized]</b> <i>id</i> - The string ID of the specific vote
@@ -501,29 +804,26 @@ public class GameService {
 	 * @throws 		 GameNotFoundException   If the game does not exist
 	 * @throws 		 IOException   		     If a resource does not exist
 	 * @see          GameManager#applyNight()
-	 * @see          #getRoles(String, String)
+	 * @see          #getRoles(GameManager, Player)
+	 * @see          GameManager#schedule(long, TimeUnit, com.akarakoutev.werewolves.game.GameMailbox.Action)
 	 */
 	protected void applyNight(String gameId) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		GameManager gameManager = getGameManager(gameId);
+		gameManager.execute(() -> {
+			gameManager.clearPhaseDeadline();
+			sendToGame(gameId,
+					null,
+					new ServerMessage(new TextPayload("It is now night time!"), MessageType.NIGHT));
 
-		sendToGame(gameId,
-				null,
-				new ServerMessage(MessageUtil.toContent("message", "It is now night time!"), MessageType.NIGHT));
-
-		gameManager.applyNight();
-
-		for (Player player : gameManager.getGame().getPlayers()) {
-			ServerMessage rolesMessage = new ServerMessage(getRoles(gameId, player.getName()), MessageType.ROLES);
-			sendToGame(gameId, player.getName(), rolesMessage);
-		}
+			gameManager.applyNight();
 
-		try {
-			Thread.sleep(5 * 1000);
-		} catch (InterruptedException ie) {
-			Thread.currentThread().interrupt();
-		}
+			for (Player player : gameManager.getGame().getPlayers()) {
+				ServerMessage rolesMessage = new ServerMessage(getRoles(gameManager, player), MessageType.ROLES);
+				sendToGame(gameId, player.getName(), rolesMessage);
+			}
 
-		checkDay(gameManager);
+			gameManager.schedule(NIGHT_START_DELAY_SECONDS, TimeUnit.SECONDS, () -> checkDay(gameManager));
+		});
 	}
 
 	/**
@@ -531,15 +831,20 @@ public class GameService {
 	 *
 	 * @param gameId The game ID for the target game
 	 * @throws 		 GameNotFoundException   If the game does not exist
+	 * @throws 		 PlayerNotFoundException If a player does not exist
+	 * @throws 		 IOException   		     If a resource does not exist
 	 */
-	protected void setPlayerRoles(String gameId) throws GameNotFoundException {
+	protected void setPlayerRoles(String gameId) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		GameManager gameManager = getGameManager(gameId);
-		gameManager.setPlayerRoles();
-		gameManager.getGame().setStarted(true);
+		gameManager.execute(() -> {
+			gameManager.setPlayerRoles();
+			gameManager.getGame().setStarted(true);
+		});
 	}
 
 	/**
-	 * Add a chat message to a specific chat. Broadcast the updated chat with a <u>CHAT</u> type message.
+	 * Add a chat message to a specific chat. Broadcast only the appended message, with its sequence number, in a
+	 * <u>CHAT</u> type message.
 	 *
 	 * @param gameId    The game ID for the target game
 	 * @param chatIdStr The ID of the specific chat
@@ -547,18 +852,43 @@ public class GameService {
 	 * @param senderStr The name of the sender
 	 * @throws 		    PlayerNotFoundException If a player does not exist
 	 * @throws 		    GameNotFoundException   If the game does not exist
+	 * @throws 		    IOException 		    If a resource does not exist
 	 * @see             GameManager#addChatMessage(UUID, LocalTime, Player, String)
 	 * @see             Chat
 	 */
-	protected void addChatMessage(String gameId, String chatIdStr, String message, String senderStr) throws GameNotFoundException, PlayerNotFoundException {
+	protected void addChatMessage(String gameId, String chatIdStr, String message, String senderStr) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		GameManager gameManager = getGameManager(gameId);
-		LocalTime timestamp = LocalTime.now();
-		Player sender = gameManager.getPlayer(senderStr);
-		UUID chatId = UUID.fromString(chatIdStr);
-		gameManager.addChatMessage(chatId, timestamp, sender, message);
+		gameManager.execute(() -> {
+			LocalTime timestamp = LocalTime.now();
+			Player sender = gameManager.getPlayer(senderStr);
+			UUID chatId = UUID.fromString(chatIdStr);
+			Chat.Message appended = gameManager.addChatMessage(chatId, timestamp, sender, message);
+
+			ServerMessage chatUpdateMessage = new ServerMessage(ChatPayload.delta(gameManager.getChat(chatId), appended), MessageType.CHAT);
+			sendToGame(gameId, null, chatUpdateMessage);
+		});
+	}
 
-		ServerMessage chatUpdateMessage = new ServerMessage(gameManager.getGame().getChats().get(chatId).serialize(), MessageType.CHAT);
-		sendToGame(gameId, null, chatUpdateMessage);
+	/**
+	 * Get a page of a chat's history, for clients that are joining or have missed messages
+	 *
+	 * @param gameId    The game ID for the target game
+	 * @param chatIdStr The ID of the specific chat
+	 * @param since     The last sequence number, which the client has
+	 * @param limit     The maximum number of messages
+	 * @return          The page
+	 * @throws 		    PlayerNotFoundException If a player does not exist
+	 * @throws 		    GameNotFoundException   If the game does not exist
+	 * @throws 		    IOException 		    If a resource does not exist
+	 * @see             Chat#getHistory(long, int)
+	 */
+	public ChatPayload getChatHistory(String gameId, String chatIdStr, long since, int limit) throws GameNotFoundException, PlayerNotFoundException, IOException {
+		GameManager gameManager = getGameManager(gameId);
+		UUID chatId = UUID.fromString(chatIdStr);
+		return gameManager.query(() -> {
+			Chat chat = gameManager.getChat(chatId);
+			return ChatPayload.history(chat, chat.getHistory(since, limit));
+		});
 	}
 
 	/**
@@ -573,20 +903,21 @@ public class GameService {
 	 */
 	protected void setReadyToSleep(String gameId, String username) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		GameManager gameManager = getGameManager(gameId);
-
-		Player player = gameManager.getPlayer(username);
-		gameManager.setReadyToSleep(player);
-
-		if(gameManager.areAllReadyToSleep()) {
-			if (gameManager.getGame().getNights() == 0) {
-				ServerMessage gameBeginMessage = new ServerMessage(MessageUtil.toContent("message", "It is now night time!"), MessageType.GAME_BEGIN);
-				logger.info("Starting game " + gameId + " ...");
-				sendToLobby(gameId, null, gameBeginMessage);
-			} else {
-				logger.info("Setting night (Night " + gameManager.getGame().getNights() + ")");
-				applyNight(gameId);
+		gameManager.execute(() -> {
+			Player player = gameManager.getPlayer(username);
+			gameManager.setReadyToSleep(player);
+
+			if(gameManager.areAllReadyToSleep()) {
+				if (gameManager.getGame().getNights() == 0) {
+					ServerMessage gameBeginMessage = new ServerMessage(new TextPayload("It is now night time!"), MessageType.GAME_BEGIN);
+					logger.info("Starting game " + gameId + " ...");
+					sendToLobby(gameId, null, gameBeginMessage);
+				} else {
+					logger.info("Setting night (Night " + gameManager.getGame().getNights() + ")");
+					applyNight(gameId);
+				}
 			}
-		}
+		});
 	}
 
 	/**
@@ -596,12 +927,38 @@ public class GameService {
 	 * @param username The name of the player that is added
 	 * @throws 		   PlayerNotFoundException If a player does not exist
 	 * @throws 		   GameNotFoundException   If the game does not exist
+	 * @throws 		   IOException 		    If a resource does not exist
 	 * @see            GameManager#addInGamePlayer(Player)
 	 */
-	protected void addPlayerToGameRoom(String gameId, String username) throws GameNotFoundException, PlayerNotFoundException {
+	protected void addPlayerToGameRoom(String gameId, String username) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		GameManager gameManager = getGameManager(gameId);
-		gameManager.addInGamePlayer(gameManager.getPlayer(username));
-		logger.info("Player " + username + " has entered the game room " + gameId);
+		gameManager.execute(() -> {
+			gameManager.addInGamePlayer(gameManager.getPlayer(username));
+			logger.info("Player " + username + " has entered the game room " + gameId);
+		});
+	}
+
+	/**
+	 * Add a player to an in-game room. When the last player has entered, hand out the roles and begin the first night.
+	 * Both steps run as a single command, so two players entering at once can not start the night twice.
+	 *
+	 * @param gameId   The game ID for the target game
+	 * @param username The name of the player that has entered
+	 * @throws 		   PlayerNotFoundException If a player does not exist
+	 * @throws 		   GameNotFoundException   If the game does not exist
+	 * @throws 		   IOException 		       If a resource does not exist
+	 * @see            #addPlayerToGameRoom(String, String)
+	 * @see            #applyNight(String)
+	 */
+	protected void enterGameRoom(String gameId, String username) throws GameNotFoundException, PlayerNotFoundException, IOException {
+		GameManager gameManager = getGameManager(gameId);
+		gameManager.execute(() -> {
+			addPlayerToGameRoom(gameId, username);
+			if (gameIsReady(gameId)) {
+				setPlayerRoles(gameId);
+				applyNight(gameId);
+			}
+		});
 	}
 
 	/**
@@ -613,24 +970,27 @@ public class GameService {
 	 * @param answer   The answer to the yes/no question
 	 * @throws 		   PlayerNotFoundException If a player does not exist
 	 * @throws 		   GameNotFoundException   If the game does not exist
+	 * @throws 		   IOException 		    If a resource does not exist
 	 * @see            WakeableRole.QA
 	 */
-	protected void wakeRoleWithAnswer(String gameId, String roleName, String username, boolean answer) throws GameNotFoundException, PlayerNotFoundException {
+	protected void wakeRoleWithAnswer(String gameId, String roleName, String username, boolean answer) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		GameManager gameManager = getGameManager(gameId);
-		Player player = gameManager.getPlayer(username);
+		gameManager.execute(() -> {
+			Player player = gameManager.getPlayer(username);
 
-		WakeableRole role = (player.roleA.name == Role.RoleName.from(roleName))
-				? (WakeableRole) player.roleA
-				: (WakeableRole) player.roleP;
+			WakeableRole role = (player.roleA.name == Role.RoleName.from(roleName))
+					? (WakeableRole) player.roleA
+					: (WakeableRole) player.roleP;
 
-		role.question.a = answer;
+			role.question.a = answer;
 
-		if (!(role instanceof TargeterRole) || !answer) {
-			wakeWakeableRole(gameManager, role);
-			return;
-		}
+			if (!(role instanceof TargeterRole) || !answer) {
+				wakeWakeableRole(gameManager, role);
+				return;
+			}
 
-		wakeTargeterRole(gameManager, (TargeterRole) role);
+			wakeTargeterRole(gameManager, (TargeterRole) role);
+		});
 	}
 
 	/**
@@ -638,75 +998,98 @@ public class GameService {
 	 *
 	 * @param gameId The game ID for the target game
 	 * @throws 		 GameNotFoundException   If the game does not exist
+	 * @throws 		 PlayerNotFoundException If a player does not exist
+	 * @throws 		 IOException   		     If a resource does not exist
 	 * @see          GameManager#isGameReadyToStart()
 	 */
-	public boolean gameIsReady(String gameId) throws GameNotFoundException {
+	public boolean gameIsReady(String gameId) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		logger.info("Game " + gameId + " is ready to start");
-		return getGameManager(gameId).isGameReadyToStart();
+		GameManager gameManager = getGameManager(gameId);
+		return gameManager.query(gameManager::isGameReadyToStart);
 	}
 
-
 	/**
-	 * Get the player's roles. Serialize them and put them inside a JsonObject.
+	 * Set the sprite width, which a player's client has asked for. The <u>ROLES</u> messages to this player then
+	 * reference the best fitting sprite variant.
 	 *
 	 * @param gameId   The game ID for the target game
-	 * @param username The name of the player with the roles
-	 * <br><b>[Serialized]</b> <i>active</i> - The active role
-	 * <br><b>[Serialized]</b> <i>passive</i> - The passive role
-	 * @return 		   A JsonObject containing the roles
-	 * @throws 		   PlayerNotFoundException If a player does not exist
+	 * @param username The name of the player
+	 * @param width    The requested width in pixels
 	 * @throws 		   GameNotFoundException   If the game does not exist
-	 * @throws 		   IOException 		       If a resource does not exist
-	 * @see            #applyNight(String)
-	 * @see            GameManager#serializeRole(Role)
-	 * @see            Role
+	 * @throws 		   PlayerNotFoundException If the player does not exist
+	 * @throws 		   IOException   		   If a resource does not exist
+	 * @see            com.akarakoutev.werewolves.sprite.SpriteCache#get(Role.RoleName, int)
 	 */
-	private JsonObject getRoles(String gameId, String username) throws GameNotFoundException, IOException, PlayerNotFoundException {
+	public void setSpriteWidth(String gameId, String username, int width) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		GameManager gameManager = getGameManager(gameId);
-		Player player = gameManager.getPlayer(username);
+		gameManager.execute(() -> gameManager.getPlayer(username).spriteWidth = width);
+	}
 
-		return MessageUtil.toContent(
-				"active", gameManager.serializeRole(player.roleA), "passive", gameManager.serializeRole(player.roleP));
 
+	/**
+	 * Get the player's roles, with the sprite variants which fit the player's client
+	 *
+	 * @param gameManager The game manager of an active game
+	 * @param player      The player with the roles
+	 * <br><b>[Serialized]</b> <i>active</i> - The active role
+	 * <br><b>[Serialized]</b> <i>passive</i> - The passive role
+	 * @return 		      The roles payload
+	 * @throws 		      IOException If a sprite does not exist
+	 * @see               #applyNight(String)
+	 * @see               RolesPayload
+	 * @see               Role
+	 */
+	private RolesPayload getRoles(GameManager gameManager, Player player) throws IOException {
+		return new RolesPayload(
+				new RolePayload(player.roleA, gameManager.getRoleSprite(player.roleA, player.spriteWidth)),
+				new RolePayload(player.roleP, gameManager.getRoleSprite(player.roleP, player.spriteWidth)));
 	}
 
 	/**
-	 * Target a player by a targeter role
+	 * Target a player by a targeter role. A role, which is not awake, e.g. because its turn has expired, is ignored.
 	 *
 	 * @param gameId     The game ID for the target game
 	 * @param roleName   The name of the targeter role
 	 * @param targetName The name of the player who is targeter
 	 * <br><b>[Serialized]</b> <i>message</i> - The message to the targeter
 	 * @throws 		   GameNotFoundException If the game does not exist
+	 * @throws 		   PlayerNotFoundException If a player does not exist
+	 * @throws 		   IOException 		       If a resource does not exist
 	 * @see            #checkDay(GameManager)
 	 * @see            GameManager#getRole(com.akarakoutev.werewolves.roles.generic.Role.RoleName)
 	 * @see            TargeterRole
 	 */
-	protected void target(String gameId, String roleName, String targetName) throws GameNotFoundException {
+	protected void target(String gameId, String roleName, String targetName) throws GameNotFoundException, PlayerNotFoundException, IOException {
 		GameManager gameManager = getGameManager(gameId);
-		TargeterRole role = (TargeterRole) gameManager.getRole(Role.RoleName.from(roleName));
-		gameManager.log(role.owner.getName() + "(" + roleName + ") has targeted " + targetName);
-		String targetResponse = role.target(targetName);
-		ServerMessage targetMessage = new ServerMessage(MessageUtil.toContent("message", targetResponse), MessageType.NOTIFY);
-		sendToGame(gameId, role.owner.getName(), targetMessage);
-		role.state = WakeableRole.State.AWOKEN;
-		if (role.name == Role.RoleName.WEREWOLF || role.name == Role.RoleName.LONE_WOLF || role.name == Role.RoleName.WOLF_CUB) {
-			gameManager.getGame().getPlayers().stream()
-			.filter(Player::isWolf)
-			.forEach(player -> ((WakeableRole) player.roleA).state = WakeableRole.State.AWOKEN);
-		} else if (role.name == Role.RoleName.VAMPIRE) {
-			gameManager.getGame().getPlayers().stream()
-			.filter(Player::isVamp)
-			.forEach(player -> ((WakeableRole) player.roleA).state = WakeableRole.State.AWOKEN);
-		} else if (role.name == Role.RoleName.REVEALER) {
-			if (!role.owner.isDead()) {
-				role.state = WakeableRole.State.UNAWOKEN;
-				role.abilityUsed = false;
+		gameManager.execute(() -> {
+			TargeterRole role = (TargeterRole) gameManager.getRole(Role.RoleName.from(roleName));
+			if (role == null || role.state != WakeableRole.State.WAKING) {
+				logger.info(roleName + " has targeted, but is not awake (Game " + gameId + ")");
+				return;
 			}
-		}
-		if (!gameManager.getGame().getDay()) {
-			checkDay(gameManager);
-		}
+			gameManager.log(role.owner.getName() + "(" + roleName + ") has targeted " + targetName);
+			String targetResponse = role.target(targetName);
+			ServerMessage targetMessage = new ServerMessage(new TextPayload(targetResponse), MessageType.NOTIFY);
+			sendToGame(gameId, role.owner.getName(), targetMessage);
+			role.state = WakeableRole.State.AWOKEN;
+			if (role.name == Role.RoleName.WEREWOLF || role.name == Role.RoleName.LONE_WOLF || role.name == Role.RoleName.WOLF_CUB) {
+				gameManager.getGame().getPlayers().stream()
+				.filter(Player::isWolf)
+				.forEach(player -> ((WakeableRole) player.roleA).state = WakeableRole.State.AWOKEN);
+			} else if (role.name == Role.RoleName.VAMPIRE) {
+				gameManager.getGame().getPlayers().stream()
+				.filter(Player::isVamp)
+				.forEach(player -> ((WakeableRole) player.roleA).state = WakeableRole.State.AWOKEN);
+			} else if (role.name == Role.RoleName.REVEALER) {
+				if (!role.owner.isDead()) {
+					role.state = WakeableRole.State.UNAWOKEN;
+					role.abilityUsed = false;
+				}
+			}
+			if (!gameManager.getGame().getDay()) {
+				checkDay(gameManager);
+			}
+		});
 	}
 
 
@@ -4,15 +4,14 @@ import com.akarakoutev.werewolves.net.message.Message;
 import com.akarakoutev.werewolves.net.message.MessageType;
 import com.akarakoutev.werewolves.net.message.MessageUtil;
 import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.message.payload.PlayersPayload;
 import com.akarakoutev.werewolves.net.exc.ExceptionUtil;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
@@ -35,9 +34,6 @@ public class LobbyController {
     BaseService baseService;
     GameService gameService;
 
-    @Autowired
-    private SimpMessageSendingOperations sendingOperations;
-
     @Autowired
     public LobbyController(BaseService baseService, GameService gameService) {
         this.baseService = baseService;
@@ -59,7 +55,7 @@ public class LobbyController {
             String gameId = requestContent.get("gameId").getAsString();
             String username = requestContent.get("username").getAsString();
             gameService.setReadyToSleep(gameId, username);
-            JsonArray players = baseService.getAllPlayers(gameId);
+            PlayersPayload players = baseService.getAllPlayers(gameId);
             ServerMessage readyMessage = new ServerMessage(players, MessageType.READY);
             gameService.sendToLobby(gameId, null, readyMessage);
 
@@ -0,0 +1,141 @@
+package com.akarakoutev.werewolves.net.mvc;
+
+import com.akarakoutev.werewolves.net.exc.RateLimitException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Limits how often a player may take an action, which is broadcast to the whole game, so one client can not flood a
+ * game's mailbox and the broker. Every (game, player, action) has a token bucket, which holds up to <i>burst</i>
+ * tokens and is refilled at <i>rate</i> tokens per second. Both are set by the
+ * <i>werewolves.ratelimit.{action}.rate</i> and <i>werewolves.ratelimit.{action}.burst</i> properties.
+ * <br>
+ * A bucket is kept as a single timestamp, the time at which it will be full again, and is taken from with a
+ * compare-and-set, so the limiter takes no locks. Full buckets are equivalent to missing ones and are swept from time
+ * to time. The throttled calls are counted per action.
+ *
+ * @author Alberto Karakoutev
+ * @see RateLimitException
+ * @see GameController
+ */
+@Component
+public class RateLimiter {
+
+    public static final Logger logger = Logger.getLogger(RateLimiter.class.getName());
+
+    /**
+     * The rate limited actions
+     */
+    public enum Action {
+        CHAT(2, 5),
+        VOTE(1, 3),
+        TARGET(1, 3);
+
+        private final double defaultRate;
+        private final int defaultBurst;
+
+        Action(double defaultRate, int defaultBurst) {
+            this.defaultRate = defaultRate;
+            this.defaultBurst = defaultBurst;
+        }
+
+        public String getValue() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * The number of calls, after which the full buckets are swept
+     */
+    private static final int SWEEP_INTERVAL = 4096;
+
+    private final Map<Action, Budget> budgets = new EnumMap<>(Action.class);
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private static class Budget {
+
+        /**
+         * The time, in which one token is refilled
+         */
+        final long intervalNanos;
+
+        /**
+         * The time, in which an empty bucket is refilled
+         */
+        final long capacityNanos;
+
+        final Counter throttled;
+
+        Budget(double rate, int burst, Counter throttled) {
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            this.capacityNanos = intervalNanos * burst;
+            this.throttled = throttled;
+        }
+    }
+
+    @Autowired
+    public RateLimiter(Environment environment, MeterRegistry registry) {
+        for (Action action : Action.values()) {
+            String prefix = "werewolves.ratelimit." + action.getValue() + ".";
+            double rate = environment.getProperty(prefix + "rate", Double.class, action.defaultRate);
+            int burst = environment.getProperty(prefix + "burst", Integer.class, action.defaultBurst);
+            if (rate <= 0 || burst <= 0)
+                throw new IllegalArgumentException("The rate limit of " + action.getValue() + " must be positive!");
+
+            Counter throttled = Counter.builder("werewolves.ratelimit.throttled")
+                    .description("Player actions, refused because the player has sent too many")
+                    .tag("action", action.getValue())
+                    .register(registry);
+            budgets.put(action, new Budget(rate, burst, throttled));
+        }
+    }
+
+    /**
+     * Take a token from a player's bucket
+     *
+     * @param action   The action, which the player takes
+     * @param gameId   The game ID for the target game
+     * @param player   The name of the player taking the action, which must already be known to be in the game
+     * @throws         RateLimitException If the bucket is empty
+     */
+    public void acquire(Action action, String gameId, String player) throws RateLimitException {
+        if (!tryAcquire(action, gameId, player, System.nanoTime()))
+            throw new RateLimitException(action.getValue());
+    }
+
+    private boolean tryAcquire(Action action, String gameId, String player, long now) {
+        Budget budget = budgets.get(action);
+        if (calls.incrementAndGet() % SWEEP_INTERVAL == 0)
+            sweep(now);
+
+        AtomicLong bucket = buckets.computeIfAbsent(action.getValue() + "/" + gameId + "/" + player, key -> new AtomicLong(now));
+        while (true) {
+            long fullAt = bucket.get();
+            // A bucket, which has been full for a while, has no more than its capacity
+            long next = Math.max(fullAt, now) + budget.intervalNanos;
+            if (next - now > budget.capacityNanos) {
+                budget.throttled.increment();
+                return false;
+            }
+            if (bucket.compareAndSet(fullAt, next))
+                return true;
+        }
+    }
+
+    private void sweep(long now) {
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+}
@@ -14,8 +14,18 @@ public class Player {
 	public boolean readyToSleep;
 	public boolean dead = false;
 
+	/**
+	 * The sprite width in pixels, requested by the player's client. Non-positive for the default width.
+	 */
+	public int spriteWidth;
+
 	public String address;
 	public String name;
+
+	/**
+	 * The secret, which the player is given on login and must present to bind a session to its private channels
+	 */
+	public String token;
 	public Role roleA;
 	public Role roleP;
 
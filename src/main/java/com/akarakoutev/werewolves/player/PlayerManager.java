@@ -5,11 +5,9 @@ import com.akarakoutev.werewolves.roles.generic.Role;
 import com.akarakoutev.werewolves.roles.wakeable.WakeableRole;
 import com.akarakoutev.werewolves.roles.targeter.TargeterRole;
 import com.akarakoutev.werewolves.net.exc.PlayerNotFoundException;
+import com.akarakoutev.werewolves.sprite.Sprite;
+import com.akarakoutev.werewolves.sprite.SpriteCache;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.time.LocalDateTime;
@@ -225,19 +223,17 @@ public class PlayerManager {
     }
 
     /**
-     * Get the sprite of a role and encode it to base 64.
+     * Get the sprite of a role, in the variant which best fits a requested width
      *
-     * @param role The role to be encoded
-     * @return     The encoded image
-     * @throws     IOException When a sprite file is not found
-     * @see        Role
+     * @param role  The role, whose sprite is needed
+     * @param width The requested width in pixels, or a non-positive value for the default width
+     * @return      The cached sprite
+     * @throws      IOException When a sprite file is not found
+     * @see         Role
+     * @see         SpriteCache#get(Role.RoleName, int)
      */
-    public String getRoleSpriteEncoded(Role role) throws IOException {
-        BufferedImage roleAImage = ImageIO.read(new File(role.sprite));
-        ByteArrayOutputStream ba = new ByteArrayOutputStream();
-        ImageIO.write(roleAImage, "jpg", ba);
-        byte[] bytesA = ba.toByteArray();
-        return Base64.getEncoder().encodeToString(bytesA);
+    public Sprite getRoleSprite(Role role, int width) throws IOException {
+        return SpriteCache.get(role.name, width);
     }
 
     /**
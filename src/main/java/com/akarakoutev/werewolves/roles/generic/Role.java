@@ -14,8 +14,6 @@ import com.akarakoutev.werewolves.roles.targeter.*;
  */
 public class Role {
 
-    private static final String SPRITE_PATH_FORMAT = "src/main/resources/img/%s.jpg";
-
     public Player owner;
     public String sprite;
     public String gameId;
@@ -103,14 +101,24 @@ public class Role {
                     .withOwner(owner)
                     .withGameId(gameId)
                     .withName(roleName)
-                    .withSprite(String.format(SPRITE_PATH_FORMAT,
-                            roleName.getRole().getSimpleName().replaceAll(" ", "")));
+                    .withSprite(getSpriteName(roleName));
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Get the name of a role's sprite, under which its variants are listed in the sprite manifest
+     *
+     * @param roleName The name object of the role
+     * @return         The sprite name
+     * @see            com.akarakoutev.werewolves.sprite.SpriteManifest
+     */
+    public static String getSpriteName(RoleName roleName) {
+        return roleName.getRole().getSimpleName().replaceAll(" ", "");
+    }
+
     private Role withName(RoleName name) {
         this.name = name;
         return this;
@@ -0,0 +1,72 @@
+package com.akarakoutev.werewolves.sprite;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * One resolution of a role's image, kept in memory as the encoded JPEG bytes. Each sprite is addressed by the
+ * hash of its content, so its URL changes whenever the image does and can be cached by clients for good.
+ *
+ * @author Alberto Karakoutev
+ * @see SpriteCache
+ */
+public class Sprite {
+
+    private static final String URL_FORMAT = "/assets/roles/%s.jpg";
+    private static final int HASH_LENGTH = 16;
+
+    private final byte[] bytes;
+    private final int width;
+    private final int height;
+    private final String hash;
+
+    public Sprite(byte[] bytes, int width, int height) {
+        this.bytes = bytes;
+        this.width = width;
+        this.height = height;
+        this.hash = hash(bytes);
+    }
+
+    /**
+     * Get the raw JPEG bytes. The array is shared and must not be modified.
+     *
+     * @return The image bytes
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getSize() {
+        return bytes.length;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getUrl() {
+        return String.format(URL_FORMAT, hash);
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < HASH_LENGTH; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
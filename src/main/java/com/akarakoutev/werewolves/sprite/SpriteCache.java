@@ -0,0 +1,136 @@
+package com.akarakoutev.werewolves.sprite;
+
+import com.akarakoutev.werewolves.roles.generic.Role;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Holds the sprites of all roles. The variants, generated by the build, are read from the classpath once, when the
+ * server starts, and are then served as-is, without being decoded or re-encoded.
+ *
+ * @author Alberto Karakoutev
+ * @see Sprite
+ * @see SpriteManifest
+ * @see Role.RoleName
+ */
+public class SpriteCache {
+
+    public static final Logger logger = Logger.getLogger(SpriteCache.class.getName());
+
+    /**
+     * The width of the variant, sent to clients which have not asked for a size
+     */
+    public static final int DEFAULT_WIDTH = 256;
+
+    private static final Map<Role.RoleName, List<Sprite>> sprites = load();
+    private static final Map<String, Sprite> spritesByHash = indexByHash(sprites);
+
+    private SpriteCache() {
+    }
+
+    /**
+     * Make sure that all sprites are loaded
+     */
+    public static void preload() {
+        logger.info("Loaded " + spritesByHash.size() + " sprite variants of " + sprites.size() + " roles");
+    }
+
+    /**
+     * Get the default variant of a role's sprite
+     *
+     * @param roleName The name of the role
+     * @return         The cached sprite
+     * @throws         IOException If the role has no sprite
+     * @see            #DEFAULT_WIDTH
+     */
+    public static Sprite get(Role.RoleName roleName) throws IOException {
+        return get(roleName, DEFAULT_WIDTH);
+    }
+
+    /**
+     * Get the variant of a role's sprite, which best fits a requested width. That is the smallest variant, which is
+     * at least as wide, or the largest one if none is.
+     *
+     * @param roleName The name of the role
+     * @param width    The requested width in pixels, or a non-positive value for the default width
+     * @return         The cached sprite
+     * @throws         IOException If the role has no sprite
+     */
+    public static Sprite get(Role.RoleName roleName, int width) throws IOException {
+        List<Sprite> variants = sprites.get(roleName);
+        if (variants == null)
+            throw new IOException("Sprite for role " + roleName + " not found!");
+
+        int requested = width > 0 ? width : DEFAULT_WIDTH;
+        for (Sprite variant : variants) {
+            if (variant.getWidth() >= requested)
+                return variant;
+        }
+        return variants.get(variants.size() - 1);
+    }
+
+    /**
+     * Get a sprite by the hash of its content
+     *
+     * @param hash The content hash
+     * @return     The cached sprite, or null if there is no such sprite
+     * @see        Sprite#getHash()
+     */
+    public static Sprite getByHash(String hash) {
+        return spritesByHash.get(hash);
+    }
+
+    private static Map<String, Sprite> indexByHash(Map<Role.RoleName, List<Sprite>> sprites) {
+        Map<String, Sprite> index = new HashMap<>();
+        sprites.values().forEach(variants -> variants.forEach(sprite -> index.put(sprite.getHash(), sprite)));
+        return Collections.unmodifiableMap(index);
+    }
+
+    private static Map<Role.RoleName, List<Sprite>> load() {
+        Map<Role.RoleName, List<Sprite>> loaded = new EnumMap<>(Role.RoleName.class);
+        SpriteManifest manifest;
+        try {
+            manifest = SpriteManifest.load();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Collections.unmodifiableMap(loaded);
+        }
+        if (manifest == null) {
+            logger.warning("Sprite manifest not found, the sprites have not been generated!");
+            return Collections.unmodifiableMap(loaded);
+        }
+
+        for (Role.RoleName roleName : Role.RoleName.values()) {
+            List<Sprite> variants = new ArrayList<>();
+            for (SpriteManifest.Variant variant : manifest.get(Role.getSpriteName(roleName))) {
+                String path = SpriteManifest.DIRECTORY + variant.getFile();
+                try (InputStream in = SpriteCache.class.getClassLoader().getResourceAsStream(path)) {
+                    if (in == null) {
+                        logger.warning("Sprite " + path + " not found!");
+                        continue;
+                    }
+                    variants.add(new Sprite(in.readAllBytes(), variant.getWidth(), variant.getHeight()));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (variants.isEmpty()) {
+                logger.warning("Role " + roleName + " has no sprite!");
+                continue;
+            }
+            variants.sort(Comparator.comparingInt(Sprite::getWidth));
+            loaded.put(roleName, Collections.unmodifiableList(variants));
+        }
+        return Collections.unmodifiableMap(loaded);
+    }
+
+}
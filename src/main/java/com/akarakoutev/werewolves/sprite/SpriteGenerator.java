@@ -0,0 +1,127 @@
+package com.akarakoutev.werewolves.sprite;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+
+/**
+ * Build step, which turns the full resolution role art into the downscaled sprites served by the game. Every image
+ * is written in each of the {@link #WIDTHS}, re-compressed as a JPEG, and listed in a {@link SpriteManifest}.
+ * <br>
+ * Run by Maven in the <i>process-classes</i> phase with the source and the output directories as arguments.
+ *
+ * @author Alberto Karakoutev
+ * @see SpriteManifest
+ */
+public class SpriteGenerator {
+
+    public static final Logger logger = Logger.getLogger(SpriteGenerator.class.getName());
+
+    /**
+     * The generated widths in pixels, from the largest to the smallest. Each variant is scaled down from the previous
+     * one, and the source is halved until it is close to the largest, so no single step shrinks the image by more than
+     * half and the result stays sharp.
+     */
+    static final int[] WIDTHS = {512, 256, 128};
+
+    private static final float JPEG_QUALITY = 0.8f;
+    private static final String SOURCE_EXTENSION = ".jpg";
+
+    private SpriteGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2)
+            throw new IllegalArgumentException("Usage: SpriteGenerator <source directory> <output directory>");
+
+        System.setProperty("java.awt.headless", "true");
+        generate(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    /**
+     * Generate the variants of all images in a directory and the manifest, describing them
+     *
+     * @param source The directory of the original images
+     * @param output The directory, where the variants and the manifest are written
+     * @throws       IOException If an image can not be read or written
+     */
+    public static void generate(Path source, Path output) throws IOException {
+        Files.createDirectories(output);
+        SpriteManifest manifest = new SpriteManifest();
+
+        int count = 0;
+        try (DirectoryStream<Path> images = Files.newDirectoryStream(source, "*" + SOURCE_EXTENSION)) {
+            for (Path image : images) {
+                String fileName = image.getFileName().toString();
+                String spriteName = fileName.substring(0, fileName.length() - SOURCE_EXTENSION.length());
+
+                BufferedImage scaled = ImageIO.read(image.toFile());
+                if (scaled == null)
+                    throw new IOException("Unsupported image " + image);
+
+                for (int width : WIDTHS) {
+                    scaled = scale(scaled, width);
+                    String variantFile = spriteName + "-" + width + SOURCE_EXTENSION;
+                    writeJpeg(scaled, output.resolve(variantFile));
+                    manifest.add(spriteName, new SpriteManifest.Variant(scaled.getWidth(), scaled.getHeight(), variantFile));
+                }
+                count++;
+            }
+        }
+
+        manifest.write(output);
+        logger.info("Generated " + WIDTHS.length + " variants of " + count + " sprites in " + output);
+    }
+
+    private static BufferedImage scale(BufferedImage image, int width) {
+        // The full resolution source may be many times wider than the largest variant, so halve it until it is close
+        while (image.getWidth() / 2 > width) {
+            image = scaleOnce(image, image.getWidth() / 2);
+        }
+        return scaleOnce(image, width);
+    }
+
+    private static BufferedImage scaleOnce(BufferedImage image, int width) {
+        int targetWidth = Math.min(width, image.getWidth());
+        int targetHeight = Math.max(1, Math.round((float) image.getHeight() * targetWidth / image.getWidth()));
+
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+        Files.deleteIfExists(file);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.akarakoutev.werewolves.sprite;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The list of all generated sprite variants, written next to the images by the build and read by the server on start.
+ *
+ * @author Alberto Karakoutev
+ * @see SpriteGenerator
+ * @see SpriteCache
+ */
+public class SpriteManifest {
+
+    /**
+     * The classpath directory of the generated sprites
+     */
+    public static final String DIRECTORY = "img/roles/";
+
+    /**
+     * The file name of the manifest, inside the sprite directory
+     */
+    public static final String FILE_NAME = "manifest.json";
+
+    private static final Gson serializer = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * The variants of every sprite, by sprite name
+     */
+    private final Map<String, List<Variant>> sprites = new TreeMap<>();
+
+    /**
+     * One resolution of a sprite
+     */
+    public static class Variant {
+
+        private final int width;
+        private final int height;
+        private final String file;
+
+        public Variant(int width, int height, String file) {
+            this.width = width;
+            this.height = height;
+            this.file = file;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public String getFile() {
+            return file;
+        }
+    }
+
+    public void add(String spriteName, Variant variant) {
+        sprites.computeIfAbsent(spriteName, name -> new ArrayList<>()).add(variant);
+    }
+
+    /**
+     * Get the variants of a sprite
+     *
+     * @param spriteName The name of the sprite
+     * @return           The variants, or an empty list if the sprite is not in the manifest
+     */
+    public List<Variant> get(String spriteName) {
+        return sprites.getOrDefault(spriteName, List.of());
+    }
+
+    /**
+     * Read the manifest from the classpath
+     *
+     * @return The manifest, or null if the sprites have not been generated
+     * @throws IOException If the manifest can not be read
+     */
+    public static SpriteManifest load() throws IOException {
+        try (InputStream in = SpriteManifest.class.getClassLoader().getResourceAsStream(DIRECTORY + FILE_NAME)) {
+            if (in == null)
+                return null;
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return serializer.fromJson(reader, SpriteManifest.class);
+            }
+        }
+    }
+
+    /**
+     * Write the manifest to a sprite directory
+     *
+     * @param directory The output directory of the generator
+     * @throws          IOException If the file can not be written
+     */
+    public void write(Path directory) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(directory.resolve(FILE_NAME), StandardCharsets.UTF_8)) {
+            serializer.toJson(this, writer);
+        }
+    }
+
+}
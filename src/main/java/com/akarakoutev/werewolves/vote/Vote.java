@@ -3,9 +3,6 @@ package com.akarakoutev.werewolves.vote;
 import com.akarakoutev.werewolves.player.Player;
 import com.akarakoutev.werewolves.roles.generic.Role;
 import com.akarakoutev.werewolves.roles.targeter.TargeterRole;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -20,6 +17,7 @@ public class Vote {
     List<Player> votees;
 
     private final Map<Player, List<Player>> ballot;
+    private boolean closed = false;
 
     public enum Type {
         LYNCH("lynch"),
@@ -47,6 +45,8 @@ public class Vote {
     }
 
     public void setVote(Player voter, List<Player> votees) {
+        if (closed)
+            return;
         if (type == Type.LYNCH) {
             if (ballot.containsKey(voter))
                 return;
@@ -74,6 +74,21 @@ public class Vote {
         return type;
     }
 
+    /**
+     * Stop accepting ballots, e.g. once the result has been applied or the vote has expired
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public boolean hasBallots() {
+        return !ballot.isEmpty();
+    }
+
     public Player getVampedVotee() {
         Map<Player, Integer> voted = numberOfVotesForPlayers();
 
@@ -85,18 +100,30 @@ public class Vote {
         return null;
     }
 
-    public JsonObject serialize() {
-        JsonObject serializedVote = new JsonObject();
-        JsonArray serializedVotees = new JsonArray();
-        for (Player votee : votees)
-            serializedVotees.add(votee.getName());
-        serializedVote.add("votees", serializedVotees);
-        if (type != Type.LYNCH)
-            serializedVote.addProperty("ballot", new Gson().toJson(numberOfVotesForPlayers()));
-        serializedVote.addProperty("type", type.getValue());
-        serializedVote.addProperty("cycle", Integer.toString(cycle));
-        serializedVote.addProperty("id", id.toString());
-        return serializedVote;
+    public UUID getId() {
+        return id;
+    }
+
+    public int getCycle() {
+        return cycle;
+    }
+
+    public List<String> getVoteeNames() {
+        return votees.stream().map(Player::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * Count the votes for each votee. The vote of a mayor counts twice.
+     *
+     * @return The number of votes by votee name, in the order of the votees
+     */
+    public Map<String, Integer> getBallotCounts() {
+        Map<Player, Integer> counts = numberOfVotesForPlayers();
+        Map<String, Integer> ballotCounts = new LinkedHashMap<>();
+        for (Player votee : votees) {
+            ballotCounts.put(votee.getName(), counts.getOrDefault(votee, 0));
+        }
+        return ballotCounts;
     }
 
     private Map<Player, Integer> numberOfVotesForPlayers() {
@@ -9,6 +9,9 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
@@ -73,8 +76,41 @@ public class TestUtil {
         return Arrays.asList(values).stream().collect(Collectors.joining("/"));
     }
 
-    public void loginUserRequest(String gameId, String username) {
-        getResponseAsMessage(Prefix.BASE, TestUtil.Type.POST, "/user/login", HttpStatus.OK, Map.of("gameId", gameId, "username", username));
+    public String loginUserRequest(String gameId, String username) {
+        ServerMessage response = getResponseAsMessage(Prefix.BASE, TestUtil.Type.POST, "/user/login", HttpStatus.OK, Map.of("gameId", gameId, "username", username));
+        return response.getContent().getAsJsonObject().get("token").getAsString();
+    }
+
+    /**
+     * Build a SUBSCRIBE message, as it reaches the inbound channel from a session
+     */
+    public static org.springframework.messaging.Message<?> subscribe(String sessionId, String subscriptionId, String destination) {
+        return subscribe(sessionId, subscriptionId, destination, null);
+    }
+
+    /**
+     * Build a SUBSCRIBE message with session attributes and STOMP headers, given as name and value pairs
+     */
+    public static org.springframework.messaging.Message<?> subscribe(String sessionId, String subscriptionId, String destination, Map<String, Object> attributes, String... nativeHeaders) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setSessionAttributes(attributes);
+        for (int i = 0; i + 1 < nativeHeaders.length; i += 2) {
+            accessor.setNativeHeader(nativeHeaders[i], nativeHeaders[i + 1]);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    /**
+     * Build an UNSUBSCRIBE message
+     */
+    public static org.springframework.messaging.Message<?> unsubscribe(String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
     }
 
     public ServerMessage getResponseAsMessage(Prefix prefix, Type type, String rawUrl, HttpStatus responseCode, Map<String, String> paramsMap) {
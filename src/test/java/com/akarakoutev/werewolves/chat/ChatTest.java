@@ -0,0 +1,119 @@
+package com.akarakoutev.werewolves.chat;
+
+import com.akarakoutev.werewolves.net.message.MessageType;
+import com.akarakoutev.werewolves.net.message.MessageUtil;
+import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.message.payload.ChatPayload;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChatTest {
+
+    private void addMessages(Chat chat, int messages) {
+        for (int i = 0; i < messages; i++) {
+            chat.addMessage(LocalTime.now(), "sender", "message " + (chat.getLastSeq() + 1));
+        }
+    }
+
+    private JsonObject encode(ChatPayload payload) {
+        String message = MessageUtil.serialize(new ServerMessage(payload, MessageType.CHAT));
+        return JsonParser.parseString(message).getAsJsonObject().getAsJsonObject("content");
+    }
+
+    @Test
+    void deltaContainsOnlyAppendedMessageTest() {
+        Chat chat = new Chat(UUID.randomUUID(), Chat.Type.DAY, 1);
+        addMessages(chat, 5);
+        Chat.Message appended = chat.addMessage(LocalTime.now(), "sender", "last");
+
+        JsonObject delta = encode(ChatPayload.delta(chat, appended));
+        JsonArray messages = delta.getAsJsonArray("messages");
+        assertEquals(1, messages.size());
+        assertEquals(6, messages.get(0).getAsJsonObject().get("seq").getAsLong());
+        assertEquals("last", messages.get(0).getAsJsonObject().get("message").getAsString());
+        assertEquals(6, delta.get("seq").getAsLong());
+        assertEquals(chat.getId().toString(), delta.get("id").getAsString());
+        assertFalse(delta.has("more"));
+    }
+
+    @Test
+    void payloadIsCopiedWhenBuiltTest() {
+        Chat chat = new Chat(UUID.randomUUID(), Chat.Type.DAY, 1);
+        addMessages(chat, 3);
+        ChatPayload latest = ChatPayload.latest(chat);
+        addMessages(chat, 2);
+
+        JsonObject written = encode(latest);
+        assertEquals(3, written.get("seq").getAsLong());
+        assertEquals(3, written.getAsJsonArray("messages").size());
+    }
+
+    @Test
+    void historyPagingTest() throws Exception {
+        Chat chat = new Chat(UUID.randomUUID(), Chat.Type.DAY, 1);
+        addMessages(chat, 10);
+
+        Chat.Page page = chat.getHistory(3, 4);
+        assertEquals(4, page.getMessages().size());
+        assertEquals(4, page.getMessages().get(0).getSeq());
+        assertEquals(7, page.getMessages().get(3).getSeq());
+        assertTrue(page.hasMore());
+        assertTrue(encode(ChatPayload.history(chat, page)).get("more").getAsBoolean());
+
+        Chat.Page last = chat.getHistory(7, 50);
+        assertEquals(3, last.getMessages().size());
+        assertFalse(last.hasMore());
+
+        assertEquals(0, chat.getHistory(10, 50).getMessages().size());
+    }
+
+    @Test
+    void olderMessagesAreReadFromArchiveTest(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("chat.seg");
+        Chat chat = new Chat(UUID.randomUUID(), Chat.Type.DAY, 1, 4, new ChatArchive(file));
+        addMessages(chat, 10);
+
+        assertEquals(4, chat.getLatestMessages().size());
+
+        Chat.Page page = chat.getHistory(2, 5);
+        assertEquals(5, page.getMessages().size());
+        assertEquals(3, page.getMessages().get(0).getSeq());
+        assertEquals(7, page.getMessages().get(4).getSeq());
+        assertEquals("message 3", page.getMessages().get(0).getMessage());
+        assertTrue(page.hasMore());
+
+        chat.seal();
+        assertEquals(10, chat.getHistory(0, 50).getMessages().size());
+
+        chat.delete();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void archiveSeeksToIndexedRecordTest(@TempDir Path directory) throws Exception {
+        try (ChatArchive archive = new ChatArchive(directory.resolve("chat.seg"))) {
+            int records = ChatArchive.INDEX_INTERVAL * 3 + 5;
+            for (int seq = 1; seq <= records; seq++) {
+                archive.append(new Chat.Message(seq, LocalTime.NOON, "sender" + seq % 3, "message é " + seq));
+            }
+
+            List<Chat.Message> page = archive.read(ChatArchive.INDEX_INTERVAL * 2 + 10, records + 1, 3);
+            assertEquals(3, page.size());
+            assertEquals(ChatArchive.INDEX_INTERVAL * 2 + 10, page.get(0).getSeq());
+            assertEquals("message é " + (ChatArchive.INDEX_INTERVAL * 2 + 12), page.get(2).getMessage());
+            assertEquals(records, archive.read(1, records + 1, records).size());
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.akarakoutev.werewolves.game;
+
+import com.akarakoutev.werewolves.player.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameDirectoryTest {
+
+    private final GameDirectory directory = new GameDirectory();
+
+    @Test
+    void listingTest() {
+        Game small = new Game("999", 2);
+        Game large = new Game("1000", 8);
+        Game started = new Game("1001", 2);
+        started.setStarted(true);
+        directory.update(small);
+        directory.update(large);
+        directory.update(started);
+
+        assertEquals(List.of("999", "1000", "1001"), ids(directory.list(false, 0, 0, Integer.MAX_VALUE)));
+        assertEquals(List.of("999", "1000"), ids(directory.list(true, 0, 0, Integer.MAX_VALUE)));
+        assertEquals(List.of("999", "1001"), ids(directory.list(false, 2, 0, Integer.MAX_VALUE)));
+        assertEquals(List.of("1000"), ids(directory.list(false, 0, 1, 1)));
+        assertEquals("0/8", directory.list(true, 8, 0, 1).get(0).toString());
+
+        assertEquals(List.of("1001"), ids(directory.list(GameDirectory.Filter.STARTED, 0, 0, Integer.MAX_VALUE)));
+        assertEquals(List.of("1001"), ids(directory.list(GameDirectory.Filter.STARTED, 2, 0, Integer.MAX_VALUE)));
+        assertTrue(directory.list(GameDirectory.Filter.STARTED, 8, 0, Integer.MAX_VALUE).isEmpty());
+        assertTrue(directory.list(GameDirectory.Filter.ALL, 5, 0, Integer.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void indicesFollowChangesTest() {
+        Game game = new Game("1000", 2);
+        directory.update(game);
+        assertEquals(List.of("1000"), ids(directory.list(GameDirectory.Filter.OPEN, 2, 0, Integer.MAX_VALUE)));
+
+        game.getPlayers().add(new Player());
+        game.getPlayers().add(new Player());
+        directory.update(game);
+        assertTrue(directory.list(GameDirectory.Filter.OPEN, 2, 0, Integer.MAX_VALUE).isEmpty());
+        assertEquals(List.of("1000"), ids(directory.list(GameDirectory.Filter.ALL, 2, 0, Integer.MAX_VALUE)));
+
+        game.setStarted(true);
+        directory.update(game);
+        assertEquals(List.of("1000"), ids(directory.list(GameDirectory.Filter.STARTED, 2, 0, Integer.MAX_VALUE)));
+
+        directory.remove("1000");
+        for (GameDirectory.Filter filter : GameDirectory.Filter.values()) {
+            assertTrue(directory.list(filter, 0, 0, Integer.MAX_VALUE).isEmpty());
+            assertTrue(directory.list(filter, 2, 0, Integer.MAX_VALUE).isEmpty());
+        }
+    }
+
+    @Test
+    void versionTest() {
+        Game game = new Game("1000", 2);
+        directory.update(game);
+        long version = directory.getVersion();
+
+        directory.update(game);
+        assertEquals(version, directory.getVersion());
+
+        game.setStarted(true);
+        directory.update(game);
+        assertTrue(directory.getVersion() > version);
+        assertTrue(directory.list(true, 0, 0, Integer.MAX_VALUE).isEmpty());
+
+        version = directory.getVersion();
+        directory.remove("1000");
+        assertTrue(directory.getVersion() > version);
+        assertEquals(0, directory.size());
+    }
+
+    @Test
+    void listenerTest() {
+        List<String> changes = new ArrayList<>();
+        directory.addListener((gameId, entry, revision) -> changes.add(gameId + ":" + (entry == null ? "removed" : entry) + "@" + revision));
+        Game game = new Game("1000", 2);
+        directory.update(game);
+        directory.update(game);
+        game.getPlayers().add(new Player());
+        directory.update(game);
+        directory.remove("1000");
+        directory.remove("1000");
+
+        assertEquals(List.of("1000:0/2@1", "1000:1/2@2", "1000:removed@3"), changes);
+    }
+
+    @Test
+    void removedGameIsNotRelistedTest() {
+        GameRegistry registry = new GameRegistry();
+        GameManager gameManager = registry.create(2);
+        String gameId = gameManager.getGame().getID();
+        GameDirectory registered = registry.getDirectory();
+        assertEquals(1, registered.size());
+
+        registry.remove(gameId);
+        gameManager.getGame().getPlayers().add(new Player());
+        // A command of the removed game, which finishes after the removal
+        registered.update(gameManager.getGame(), () -> registry.get(gameId) == gameManager);
+
+        assertEquals(0, registered.size());
+        assertTrue(registered.list(false, 0, 0, Integer.MAX_VALUE).isEmpty());
+    }
+
+    private static List<String> ids(List<GameDirectory.Entry> entries) {
+        return entries.stream().map(GameDirectory.Entry::getId).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.akarakoutev.werewolves.game;
+
+import com.akarakoutev.werewolves.chat.Chat;
+import com.akarakoutev.werewolves.net.message.payload.ViewPayload;
+import com.akarakoutev.werewolves.player.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameViewTest {
+
+    private final Game game = new Game("test", 2);
+    private final GameView view = new GameView(game);
+    private final Player alice = player("alice");
+    private final Player bob = player("bob");
+
+    GameViewTest() {
+        game.setPlayers(List.of(alice, bob));
+    }
+
+    @Test
+    void fullViewTest() {
+        ViewPayload full = view.render(alice, 0);
+
+        assertEquals(Set.of(GameView.GAME, GameView.PLAYERS, GameView.SELF, GameView.CHATS, GameView.VOTES), full.getSections().keySet());
+        assertTrue(full.getVersion() > 0);
+        assertEquals("alice", full.getSections().get(GameView.SELF).getAsJsonObject().get("name").getAsString());
+    }
+
+    @Test
+    void onlyChangedSectionsTest() {
+        long version = view.render(alice, 0).getVersion();
+        ViewPayload unchanged = view.render(alice, version);
+        assertTrue(unchanged.getSections().isEmpty());
+        assertEquals(version, unchanged.getVersion());
+
+        bob.kill();
+        ViewPayload delta = view.render(alice, version);
+        assertEquals(Set.of(GameView.PLAYERS), delta.getSections().keySet());
+        assertTrue(delta.getVersion() > version);
+    }
+
+    @Test
+    void versionsOfOtherPlayersAreKeptApartTest() {
+        long version = view.render(alice, 0).getVersion();
+        alice.kill();
+        view.render(bob, 0);
+
+        assertEquals(Set.of(GameView.PLAYERS, GameView.SELF), view.render(alice, version).getSections().keySet());
+    }
+
+    @Test
+    void publicViewTest() {
+        UUID wolfChat = UUID.randomUUID();
+        game.getChats().put(wolfChat, new Chat(wolfChat, Chat.Type.WEREWOLVES, 1));
+        ViewPayload full = view.renderPublic(0);
+
+        assertEquals(Set.of(GameView.GAME, GameView.PLAYERS, GameView.CHATS, GameView.VOTES), full.getSections().keySet());
+        assertEquals(0, full.getSections().get(GameView.CHATS).getAsJsonArray().size());
+        assertTrue(view.renderPublic(full.getVersion()).getSections().isEmpty());
+    }
+
+    private static Player player(String name) {
+        Player player = new Player();
+        player.name = name;
+        return player;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.akarakoutev.werewolves.game;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhaseTimerTest {
+
+    private final PhaseTimer timer = new PhaseTimer(10, TimeUnit.MILLISECONDS, 8);
+
+    @AfterEach
+    void stopTimer() {
+        timer.stop();
+    }
+
+    @Test
+    void firesAfterDelayTest() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        PhaseTimer.Timeout timeout = timer.schedule(50, TimeUnit.MILLISECONDS, fired::countDown);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.isExpired());
+    }
+
+    @Test
+    void firesAfterSeveralRoundsTest() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.schedule(250, TimeUnit.MILLISECONDS, fired::countDown);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    @Test
+    void cancelledTimeoutDoesNotFireTest() throws InterruptedException {
+        AtomicBoolean fired = new AtomicBoolean(false);
+        PhaseTimer.Timeout timeout = timer.schedule(30, TimeUnit.MILLISECONDS, () -> fired.set(true));
+
+        assertTrue(timeout.cancel());
+        Thread.sleep(150);
+        assertFalse(fired.get());
+        assertFalse(timeout.cancel());
+    }
+
+}
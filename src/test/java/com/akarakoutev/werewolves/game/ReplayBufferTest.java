@@ -0,0 +1,59 @@
+package com.akarakoutev.werewolves.game;
+
+import com.akarakoutev.werewolves.net.message.Frame;
+import com.akarakoutev.werewolves.net.message.MessageType;
+import com.akarakoutev.werewolves.net.message.MessageUtil;
+import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayBufferTest {
+
+    private static final String PUBLIC = "/topic/game/test";
+    private static final String ALICE = "/topic/game/test/alice";
+    private static final String BOB = "/topic/game/test/bob";
+
+    private final ReplayBuffer replay = new ReplayBuffer(4);
+
+    @Test
+    void framesAreSequencedTest() {
+        Frame first = record(PUBLIC, "first");
+        Frame second = record(ALICE, "second");
+
+        assertEquals(1, JsonParser.parseString(first.toString()).getAsJsonObject().get("seq").getAsLong());
+        assertEquals(2, JsonParser.parseString(second.toString()).getAsJsonObject().get("seq").getAsLong());
+        assertEquals(2, replay.getLastSeq());
+    }
+
+    @Test
+    void onlyTheGapIsReplayedTest() {
+        Frame first = record(PUBLIC, "first");
+        Frame toAlice = record(ALICE, "alice");
+        record(BOB, "bob");
+        Frame last = record(PUBLIC, "last");
+
+        assertEquals(List.of(toAlice, last), replay.replay(1, List.of(PUBLIC, ALICE)));
+        assertEquals(List.of(first, toAlice, last), replay.replay(0, List.of(PUBLIC, ALICE)));
+        assertTrue(replay.replay(4, List.of(PUBLIC, ALICE)).isEmpty());
+    }
+
+    @Test
+    void lostGapNeedsResyncTest() {
+        for (int i = 0; i < 6; i++) {
+            record(PUBLIC, "message " + i);
+        }
+
+        assertNull(replay.replay(1, List.of(PUBLIC)));
+        assertEquals(4, replay.replay(2, List.of(PUBLIC)).size());
+    }
+
+    private Frame record(String destination, String text) {
+        ServerMessage message = new ServerMessage(MessageUtil.toContent("message", text), MessageType.NOTIFY);
+        return replay.record(destination, seq -> Frame.of(message.withSeq(seq)));
+    }
+
+}
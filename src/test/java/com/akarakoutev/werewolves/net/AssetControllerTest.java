@@ -0,0 +1,52 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.roles.generic.Role;
+import com.akarakoutev.werewolves.sprite.Sprite;
+import com.akarakoutev.werewolves.sprite.SpriteCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AssetControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void getRoleSpriteTest() throws Exception {
+        Sprite sprite = SpriteCache.get(Role.RoleName.SEER);
+        mockMvc.perform(get(sprite.getUrl()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + sprite.getHash() + "\""))
+                .andExpect(content().bytes(sprite.getBytes()));
+    }
+
+    @Test
+    void getRoleSpriteNotModifiedTest() throws Exception {
+        Sprite sprite = SpriteCache.get(Role.RoleName.SEER);
+        mockMvc.perform(get(sprite.getUrl()).header(HttpHeaders.IF_NONE_MATCH, "\"" + sprite.getHash() + "\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void spriteVariantTest() throws Exception {
+        assertEquals(128, SpriteCache.get(Role.RoleName.SEER, 100).getWidth());
+        assertEquals(SpriteCache.DEFAULT_WIDTH, SpriteCache.get(Role.RoleName.SEER, 0).getWidth());
+        assertEquals(512, SpriteCache.get(Role.RoleName.SEER, 2048).getWidth());
+    }
+
+    @Test
+    void getMissingSpriteFails() throws Exception {
+        mockMvc.perform(get("/assets/roles/0000.jpg")).andExpect(status().isNotFound());
+    }
+
+}
@@ -2,6 +2,7 @@ package com.akarakoutev.werewolves.net;
 
 import com.akarakoutev.werewolves.TestUtil;
 import com.akarakoutev.werewolves.net.message.MessageUtil;
+import com.akarakoutev.werewolves.net.mvc.BaseService;
 import com.akarakoutev.werewolves.net.message.ServerMessage;
 import com.google.gson.JsonObject;
 import org.junit.Before;
@@ -39,14 +40,31 @@ public class BaseControllerTest {
     @Test
     void createGameTest() {
         String gameId = util.createGameRequest(2);
-        assertDoesNotThrow( () ->  Integer.parseInt(gameId));
+        String prefix = BaseService.getActiveGames().getNode() + "-";
+        assertTrue(gameId.startsWith(prefix));
+        assertDoesNotThrow( () ->  Integer.parseInt(gameId.substring(prefix.length())));
     }
 
     @Test
     void deleteGameTest() {
         String gameId = util.createGameRequest(2);
         String gameIdResponse = util.deleteGameRequest(gameId);
-        assertDoesNotThrow( () ->  Integer.parseInt(gameIdResponse));
+        assertEquals(gameId, gameIdResponse);
+    }
+
+    @Test
+    void createdGameIdsAreUniqueTest() {
+        Set<String> gameIds = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(gameIds.add(util.createGameRequest(2)));
+        }
+    }
+
+    @Test
+    void deleteMissingGameTest() {
+        String gameId = util.createGameRequest(2);
+        util.deleteGameRequest(gameId);
+        util.getResponseAsMessage(TestUtil.Prefix.BASE, TestUtil.Type.DELETE, util.url("game", gameId, "delete"), HttpStatus.NOT_FOUND, Collections.emptyMap());
     }
 
     @Test
@@ -65,6 +83,26 @@ public class BaseControllerTest {
 
     }
 
+    @Test
+    void getOpenGamesTest() {
+        String fullId = util.createGameRequest(1);
+        util.loginUserRequest(fullId, "username");
+        String openId = util.createGameRequest(5);
+
+        ServerMessage openGamesResponse = util.getResponseAsMessage(TestUtil.Prefix.BASE, TestUtil.Type.GET, util.url("game", "all"), HttpStatus.OK, Map.of("open", "true", "size", "5"));
+        List<?> content = MessageUtil.fromContent(openGamesResponse.getContent(), List.class);
+
+        assertTrue(content.contains(new LinkedHashMap<>(Map.of("id", openId, "players", "0/5", "started", false))));
+        assertTrue(content.stream().noneMatch(game -> fullId.equals(((Map<?, ?>) game).get("id"))));
+
+        ServerMessage pageResponse = util.getResponseAsMessage(TestUtil.Prefix.BASE, TestUtil.Type.GET, util.url("game", "all"), HttpStatus.OK, Map.of("limit", "1"));
+        assertEquals(1, MessageUtil.fromContent(pageResponse.getContent(), List.class).size());
+
+        ServerMessage startedResponse = util.getResponseAsMessage(TestUtil.Prefix.BASE, TestUtil.Type.GET, util.url("game", "all"), HttpStatus.OK, Map.of("started", "true"));
+        assertTrue(MessageUtil.fromContent(startedResponse.getContent(), List.class).stream().noneMatch(game -> openId.equals(((Map<?, ?>) game).get("id"))));
+        util.getResponseAsMessage(TestUtil.Prefix.BASE, TestUtil.Type.GET, util.url("game", "all"), HttpStatus.BAD_REQUEST, Map.of("open", "true", "started", "true"));
+    }
+
     @Test
     void loginTest() {
         String gameId = util.createGameRequest(2);
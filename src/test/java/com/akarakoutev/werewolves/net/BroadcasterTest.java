@@ -0,0 +1,131 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.game.GameMailbox;
+import com.akarakoutev.werewolves.game.ReplayBuffer;
+import com.akarakoutev.werewolves.net.broadcast.Broadcaster;
+import com.akarakoutev.werewolves.net.message.Frame;
+import com.akarakoutev.werewolves.net.message.MessageType;
+import com.akarakoutev.werewolves.net.message.MessageUtil;
+import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class BroadcasterTest {
+
+    @Autowired
+    Broadcaster broadcaster;
+
+    @Autowired
+    @Qualifier("brokerChannel")
+    SubscribableChannel brokerChannel;
+
+    @Test
+    void frameIsSentWithoutConversionTest() {
+        List<Message<?>> sent = new ArrayList<>();
+        MessageHandler handler = message -> {
+            if ("/topic/test".equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders())))
+                sent.add(message);
+        };
+        brokerChannel.subscribe(handler);
+        try {
+            Frame frame = Frame.of(new ServerMessage(MessageUtil.toContent("message", "test"), MessageType.NOTIFY));
+            broadcaster.send("/topic/test", frame);
+            broadcaster.send("/topic/test", frame);
+
+            assertEquals(2, sent.size());
+            assertSame(frame.getPayload(), sent.get(0).getPayload());
+            assertSame(frame.getPayload(), sent.get(1).getPayload());
+            assertEquals(Broadcaster.CONTENT_TYPE, sent.get(0).getHeaders().get(MessageHeaders.CONTENT_TYPE));
+        } finally {
+            brokerChannel.unsubscribe(handler);
+        }
+    }
+
+    @Test
+    void commandFramesAreBatchedTest() throws Exception {
+        List<Message<?>> sent = new ArrayList<>();
+        MessageHandler handler = message -> {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            if ("/topic/batch".equals(destination) || "/topic/single".equals(destination))
+                sent.add(message);
+        };
+        brokerChannel.subscribe(handler);
+        try {
+            Frame single = Frame.of(new ServerMessage(MessageUtil.toContent("message", "single"), MessageType.NOTIFY));
+            new GameMailbox().call(() -> {
+                for (int i = 0; i < 3; i++) {
+                    broadcaster.send("/topic/batch", new ServerMessage(MessageUtil.toContent("message", "test" + i), MessageType.NOTIFY));
+                }
+                broadcaster.send("/topic/single", single);
+                assertTrue(sent.isEmpty());
+                return null;
+            });
+
+            assertEquals(2, sent.size());
+            JsonObject batch = JsonParser.parseString(new String((byte[]) sent.get(0).getPayload(), StandardCharsets.UTF_8)).getAsJsonObject();
+            assertEquals(MessageType.BATCH.name(), batch.get("type").getAsString());
+            JsonArray messages = batch.getAsJsonArray("content");
+            assertEquals(3, messages.size());
+            assertEquals("test2", messages.get(2).getAsJsonObject().getAsJsonObject("content").get("message").getAsString());
+            assertSame(single.getPayload(), sent.get(1).getPayload());
+        } finally {
+            brokerChannel.unsubscribe(handler);
+        }
+    }
+
+    @Test
+    void interleavedFramesKeepSeqOrderTest() throws Exception {
+        List<String> sent = new ArrayList<>();
+        MessageHandler handler = message -> {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            if (!"/topic/public".equals(destination) && !"/topic/private".equals(destination))
+                return;
+            JsonObject frame = JsonParser.parseString(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)).getAsJsonObject();
+            JsonArray messages = MessageType.BATCH.name().equals(frame.get("type").getAsString()) ? frame.getAsJsonArray("content") : null;
+            if (messages == null) {
+                sent.add(destination + ":" + frame.get("seq").getAsLong());
+                return;
+            }
+            for (int i = 0; i < messages.size(); i++) {
+                sent.add(destination + ":" + messages.get(i).getAsJsonObject().get("seq").getAsLong());
+            }
+        };
+        brokerChannel.subscribe(handler);
+        try {
+            ReplayBuffer replay = new ReplayBuffer();
+            new GameMailbox().call(() -> {
+                broadcaster.send("/topic/public", "/topic/public", notify("1"), replay);
+                broadcaster.send("/topic/public", "/topic/public", notify("2"), replay);
+                broadcaster.send("/topic/private", "/topic/private", notify("3"), replay);
+                broadcaster.send("/topic/public", "/topic/public", notify("4"), replay);
+                return null;
+            });
+
+            assertEquals(List.of("/topic/public:1", "/topic/public:2", "/topic/private:3", "/topic/public:4"), sent);
+        } finally {
+            brokerChannel.unsubscribe(handler);
+        }
+    }
+
+    private static ServerMessage notify(String message) {
+        return new ServerMessage(MessageUtil.toContent("message", message), MessageType.NOTIFY);
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.game.GameRegistry;
+import com.akarakoutev.werewolves.net.broadcast.Broadcaster;
+import com.akarakoutev.werewolves.net.broadcast.GameDirectoryEmitter;
+import com.akarakoutev.werewolves.net.message.MessageType;
+import com.akarakoutev.werewolves.net.message.MessageUtil;
+import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.mvc.BaseService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.messaging.tcp.reactor.ReactorNettyTcpClient;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "werewolves.broker.mode=relay",
+        "werewolves.broker.embedded=true",
+        "werewolves.broker.relay.port=61699"
+})
+public class BrokerRelayTest {
+
+    @Autowired
+    StompBrokerRelayMessageHandler relayMessageHandler;
+
+    @Autowired
+    Broadcaster broadcaster;
+
+    @Autowired
+    GameDirectoryEmitter directoryEmitter;
+
+    @Test
+    void relayConnectsToEmbeddedBrokerTest() throws InterruptedException {
+        awaitBroker();
+        assertEquals(61699, relayMessageHandler.getRelayPort());
+    }
+
+    @Test
+    void nodesSharingBrokerKeepTheirTopicsApartTest() throws Exception {
+        awaitBroker();
+        // The registry of this server and the one of another server, which relays through the same broker
+        GameRegistry local = BaseService.getActiveGames();
+        GameRegistry other = new GameRegistry();
+        String otherId = other.create(2).getGame().getID();
+
+        ReactorNettyTcpStompClient client = new ReactorNettyTcpStompClient(new ReactorNettyTcpClient<>("localhost", 61699, new StompReactorNettyCodec()));
+        client.setMessageConverter(new StringMessageConverter());
+        StompSession session = client.connect(new StompHeaders(), new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+        try {
+            BlockingQueue<String> gameFrames = subscribe(session, "/topic/game/" + otherId);
+            BlockingQueue<String> otherDirectory = subscribe(session, GameDirectoryEmitter.topic(other.getNode()));
+            BlockingQueue<String> localDirectory = subscribe(session, GameDirectoryEmitter.topic(local.getNode()));
+            // The subscriptions reach the broker before anything is sent to them
+            Thread.sleep(500);
+            String localId = local.create(2).getGame().getID();
+            assertNotEquals(localId, otherId);
+
+            broadcaster.send("/topic/game/" + localId, new ServerMessage(MessageUtil.toContent("message", "local"), MessageType.NOTIFY));
+            broadcaster.send("/topic/game/" + otherId, new ServerMessage(MessageUtil.toContent("message", "other"), MessageType.NOTIFY));
+            String frame = gameFrames.poll(10, TimeUnit.SECONDS);
+            assertNotNull(frame);
+            assertTrue(frame.contains("other"));
+
+            directoryEmitter.flush();
+            String directory = localDirectory.poll(10, TimeUnit.SECONDS);
+            while (directory != null && !directory.contains(localId)) {
+                directory = localDirectory.poll(10, TimeUnit.SECONDS);
+            }
+            assertNotNull(directory);
+            assertFalse(directory.contains(otherId));
+            assertNull(otherDirectory.poll(500, TimeUnit.MILLISECONDS));
+            assertTrue(gameFrames.isEmpty());
+            local.remove(localId);
+        } finally {
+            session.disconnect();
+            client.shutdown();
+        }
+    }
+
+    private void awaitBroker() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!relayMessageHandler.isBrokerAvailable() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertTrue(relayMessageHandler.isBrokerAvailable());
+    }
+
+    private static BlockingQueue<String> subscribe(StompSession session, String destination) {
+        BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add((String) payload);
+            }
+        });
+        return frames;
+    }
+
+}
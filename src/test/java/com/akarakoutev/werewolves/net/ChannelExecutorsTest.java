@@ -0,0 +1,73 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.net.broadcast.ChannelExecutors;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class ChannelExecutorsTest {
+
+    @Autowired
+    @Qualifier("clientInboundChannelExecutor")
+    ThreadPoolTaskExecutor inboundExecutor;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void channelsAreConfiguredTest() {
+        assertEquals(1000, inboundExecutor.getThreadPoolExecutor().getQueue().remainingCapacity());
+        assertNotNull(meterRegistry.find("werewolves.channel.queued").tag("channel", ChannelExecutors.INBOUND).gauge());
+        assertNotNull(meterRegistry.find("werewolves.channel.queued").tag("channel", ChannelExecutors.OUTBOUND).gauge());
+        assertNull(meterRegistry.find("werewolves.channel.queued").tag("channel", ChannelExecutors.BROKER).gauge());
+    }
+
+    @Test
+    void fullExecutorShedsLoadTest() throws InterruptedException {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("werewolves.channels.test.core-size", "1")
+                .withProperty("werewolves.channels.test.max-size", "1")
+                .withProperty("werewolves.channels.test.queue-capacity", "1")
+                .withProperty("werewolves.channels.test.rejection", "discard");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ThreadPoolTaskExecutor executor = new ChannelExecutors(environment, registry).create("test");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        try {
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            executor.execute(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            executor.execute(() -> { });
+            executor.execute(() -> fail("A discarded task must not run"));
+
+            assertEquals(1, registry.get("werewolves.channel.active").gauge().value());
+            assertEquals(1, registry.get("werewolves.channel.queued").gauge().value());
+            assertEquals(1, registry.get("werewolves.channel.rejected").counter().count());
+            release.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, registry.get("werewolves.channel.time").timer().count());
+    }
+
+}
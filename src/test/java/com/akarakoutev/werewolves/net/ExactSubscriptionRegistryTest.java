@@ -0,0 +1,69 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.TestUtil;
+import com.akarakoutev.werewolves.net.broadcast.ExactSubscriptionRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class ExactSubscriptionRegistryTest {
+
+    @Autowired
+    SimpleBrokerMessageHandler brokerMessageHandler;
+
+    private final ExactSubscriptionRegistry registry = new ExactSubscriptionRegistry();
+
+    @Test
+    void registryIsInstalledTest() {
+        assertTrue(brokerMessageHandler.getSubscriptionRegistry() instanceof ExactSubscriptionRegistry);
+    }
+
+    @Test
+    void exactDestinationTest() {
+        registry.registerSubscription(TestUtil.subscribe("s1", "sub1", "/topic/game/1"));
+        registry.registerSubscription(TestUtil.subscribe("s2", "sub1", "/topic/game/1"));
+        registry.registerSubscription(TestUtil.subscribe("s2", "sub2", "/topic/game/1/bob"));
+        registry.registerSubscription(TestUtil.subscribe("s3", "sub1", "/topic/game/2"));
+
+        assertEquals(Set.of("s1", "s2"), find("/topic/game/1").keySet());
+        assertEquals(List.of("sub2"), find("/topic/game/1/bob").get("s2"));
+        assertTrue(find("/topic/game/3").isEmpty());
+
+        registry.unregisterSubscription(TestUtil.unsubscribe("s1", "sub1"));
+        assertEquals(Set.of("s2"), find("/topic/game/1").keySet());
+
+        registry.unregisterAllSubscriptions("s2");
+        assertTrue(find("/topic/game/1").isEmpty());
+        assertTrue(find("/topic/game/1/bob").isEmpty());
+        assertEquals(Set.of("s3"), find("/topic/game/2").keySet());
+    }
+
+    @Test
+    void patternDestinationTest() {
+        registry.registerSubscription(TestUtil.subscribe("s1", "sub1", "/topic/game/*"));
+        registry.registerSubscription(TestUtil.subscribe("s2", "sub1", "/topic/game/1"));
+
+        assertEquals(Set.of("s1", "s2"), find("/topic/game/1").keySet());
+
+        registry.unregisterAllSubscriptions("s1");
+        assertEquals(Set.of("s2"), find("/topic/game/1").keySet());
+    }
+
+    private MultiValueMap<String, String> find(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return registry.findSubscriptions(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.TestUtil;
+import com.akarakoutev.werewolves.net.broadcast.SessionRegistry;
+import com.akarakoutev.werewolves.net.message.Message;
+import com.akarakoutev.werewolves.net.message.MessageType;
+import com.akarakoutev.werewolves.net.message.MessageUtil;
+import com.akarakoutev.werewolves.game.GameView;
+import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.mvc.BaseService;
+import com.akarakoutev.werewolves.net.mvc.GameController;
+import com.akarakoutev.werewolves.net.mvc.GameService;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class GameActionTest {
+
+    @Autowired
+    GameController gameController;
+
+    @Autowired
+    GameService gameService;
+
+    @Autowired
+    SessionRegistry sessionRegistry;
+
+    @Autowired
+    @Qualifier("brokerChannel")
+    SubscribableChannel brokerChannel;
+
+    private final TestUtil util;
+
+    @Autowired
+    public GameActionTest(MockMvc mockMvc) {
+        util = new TestUtil(mockMvc);
+    }
+
+    @Test
+    void resultIsSentToSessionTest() {
+        String gameId = util.createGameRequest(2);
+        String token = util.loginUserRequest(gameId, "sleeper");
+        assertTrue(gameService.bindSession(gameId, "sleeper", token, "action-session"));
+
+        List<JsonObject> results = new ArrayList<>();
+        MessageHandler handler = message -> {
+            if ("/queue/result-useraction-session".equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders())))
+                results.add(JsonParser.parseString(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)).getAsJsonObject());
+        };
+        brokerChannel.subscribe(handler);
+        try {
+            gameController.sleep(action("correlationId", "1", "username", "sleeper"), gameId, session());
+            gameController.vote(action("correlationId", "2", "voteId", "none", "voter", "sleeper", "votee", "sleeper"), "missing", session());
+
+            assertEquals(2, results.size());
+            assertEquals(MessageType.RESULT.name(), results.get(0).get("type").getAsString());
+            JsonObject slept = results.get(0).getAsJsonObject("content");
+            assertEquals("1", slept.get("correlationId").getAsString());
+            assertEquals(200, slept.get("code").getAsInt());
+            JsonObject failed = results.get(1).getAsJsonObject("content");
+            assertEquals("2", failed.get("correlationId").getAsString());
+            assertEquals(404, failed.get("code").getAsInt());
+            assertTrue(failed.has("error"));
+
+            results.clear();
+            sessionRegistry.register("missing", "flooder", "action-session");
+            for (int i = 0; i < 4; i++) {
+                gameController.vote(action("correlationId", "3", "voteId", "none", "voter", "flooder", "votee", "sleeper"), "missing", session());
+            }
+            assertEquals(429, results.get(3).getAsJsonObject("content").get("code").getAsInt());
+        } finally {
+            brokerChannel.unsubscribe(handler);
+            sessionRegistry.release("action-session");
+        }
+    }
+
+    @Test
+    void actionOfUnboundSessionIsRefusedTest() {
+        String gameId = util.createGameRequest(2);
+        String token = util.loginUserRequest(gameId, "owner");
+        assertTrue(gameService.bindSession(gameId, "owner", token, "owner-session"));
+
+        List<JsonObject> results = new ArrayList<>();
+        MessageHandler handler = message -> {
+            if ("/queue/result-userintruder-session".equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders())))
+                results.add(JsonParser.parseString(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)).getAsJsonObject().getAsJsonObject("content"));
+        };
+        brokerChannel.subscribe(handler);
+        try {
+            gameController.sleep(action("username", "owner"), gameId, session("intruder-session"));
+            gameController.addChatMessage(action("chatId", "none", "message", "spoofed", "username", "owner"), gameId, session("intruder-session"));
+            // The role has no owner before the game starts, so no session may act for it
+            gameController.target(action("roleName", "WEREWOLF", "targetName", "owner"), gameId, session("intruder-session"));
+
+            assertEquals(3, results.size());
+            for (JsonObject result : results) {
+                assertEquals(404, result.get("code").getAsInt());
+            }
+            assertTrue(results.get(0).get("error").getAsString().contains("not bound"));
+            assertFalse(BaseService.getActiveGames().get(gameId).getGame().getPlayers().get(0).readyToSleep);
+        } finally {
+            brokerChannel.unsubscribe(handler);
+            sessionRegistry.release("owner-session");
+            util.deleteGameRequest(gameId);
+        }
+    }
+
+    @Test
+    void httpReplayAndViewArePublicTest() {
+        String gameId = util.createGameRequest(2);
+        util.loginUserRequest(gameId, "secretive");
+        gameService.sendToGame(gameId, "secretive", new ServerMessage(MessageUtil.toContent("message", "private"), MessageType.NOTIFY));
+        gameService.sendToGame(gameId, null, new ServerMessage(MessageUtil.toContent("message", "public"), MessageType.NOTIFY));
+
+        String replay = gameController.getReplay(gameId, "secretive", 0).getBody();
+        assertTrue(replay.contains("\"public\""));
+        assertFalse(replay.contains("\"private\""));
+
+        JsonObject view = JsonParser.parseString(gameController.getView(gameId, "secretive", 0).getBody()).getAsJsonObject();
+        assertFalse(view.getAsJsonObject("content").getAsJsonObject("sections").has(GameView.SELF));
+
+        util.deleteGameRequest(gameId);
+    }
+
+    @Test
+    void unknownPlayerTakesNoTokenTest() {
+        String gameId = util.createGameRequest(2);
+        util.loginUserRequest(gameId, "voter");
+        String ballot = MessageUtil.serialize(new Message(MessageUtil.toContent("gameId", gameId, "voteId", "none", "voter", "ghost", "votee", "voter")));
+
+        // A name, which is not in the game, is refused before it can take a token
+        for (int i = 0; i < 5; i++) {
+            assertEquals(HttpStatus.NOT_FOUND, gameController.vote(ballot).getStatusCode());
+        }
+
+        util.deleteGameRequest(gameId);
+    }
+
+    private static Message action(String... keyValues) {
+        return new Message(MessageUtil.toContent(keyValues));
+    }
+
+    private static SimpMessageHeaderAccessor session() {
+        return session("action-session");
+    }
+
+    private static SimpMessageHeaderAccessor session(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        return accessor;
+    }
+
+}
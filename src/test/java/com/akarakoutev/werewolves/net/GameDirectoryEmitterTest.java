@@ -0,0 +1,135 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.TestUtil;
+import com.akarakoutev.werewolves.game.Game;
+import com.akarakoutev.werewolves.game.GameDirectory;
+import com.akarakoutev.werewolves.net.broadcast.Broadcaster;
+import com.akarakoutev.werewolves.net.broadcast.DirectoryTopicInterceptor;
+import com.akarakoutev.werewolves.net.broadcast.GameDirectoryEmitter;
+import com.akarakoutev.werewolves.net.message.MessageType;
+import com.akarakoutev.werewolves.net.mvc.BaseService;
+import com.akarakoutev.werewolves.player.Player;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class GameDirectoryEmitterTest {
+
+    @Autowired
+    GameDirectoryEmitter directoryEmitter;
+
+    @Autowired
+    Broadcaster broadcaster;
+
+    @Autowired
+    @Qualifier("messageBrokerTaskScheduler")
+    TaskScheduler scheduler;
+
+    @Autowired
+    DirectoryTopicInterceptor directoryTopicInterceptor;
+
+    @Autowired
+    @Qualifier("brokerChannel")
+    SubscribableChannel brokerChannel;
+
+    private final TestUtil util;
+
+    @Autowired
+    public GameDirectoryEmitterTest(MockMvc mockMvc) {
+        util = new TestUtil(mockMvc);
+    }
+
+    @Test
+    void snapshotTest() {
+        String gameId = util.createGameRequest(3);
+        util.loginUserRequest(gameId, "browser");
+
+        JsonObject snapshot = JsonParser.parseString(directoryEmitter.snapshot()).getAsJsonObject();
+        assertEquals(MessageType.DIRECTORY.name(), snapshot.get("type").getAsString());
+        JsonObject content = snapshot.getAsJsonObject("content");
+        assertTrue(content.get("snapshot").getAsBoolean());
+        JsonObject game = find(content.getAsJsonArray("games"), gameId);
+        assertNotNull(game);
+        assertEquals("1/3", game.get("players").getAsString());
+        assertTrue(game.get("revision").getAsLong() <= content.get("version").getAsLong());
+
+        util.deleteGameRequest(gameId);
+    }
+
+    @Test
+    void coalescedChangesTest() {
+        List<JsonObject> pushed = new CopyOnWriteArrayList<>();
+        MessageHandler handler = message -> {
+            if (GameDirectoryEmitter.topic(BaseService.getActiveGames().getNode()).equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders())))
+                pushed.add(JsonParser.parseString(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)).getAsJsonObject());
+        };
+        // Not started, so only the changes given to it here are pushed
+        GameDirectoryEmitter emitter = new GameDirectoryEmitter(broadcaster, scheduler);
+        GameDirectory directory = new GameDirectory();
+        directory.addListener(emitter);
+        brokerChannel.subscribe(handler);
+        try {
+            emitter.flush();
+            assertTrue(pushed.isEmpty());
+
+            Game game = new Game("coalesced", 2);
+            directory.update(game);
+            game.getPlayers().add(new Player());
+            directory.update(game);
+            directory.update(new Game("removed", 2));
+            directory.remove("removed");
+            emitter.flush();
+
+            assertEquals(1, pushed.size());
+            JsonObject content = pushed.get(0).getAsJsonObject("content");
+            assertFalse(content.get("snapshot").getAsBoolean());
+            JsonArray games = content.getAsJsonArray("games");
+            assertEquals(1, games.size());
+            assertEquals("1/2", find(games, "coalesced").get("players").getAsString());
+            JsonObject removed = find(content.getAsJsonArray("removed"), "removed");
+            assertEquals(4, removed.get("revision").getAsLong());
+        } finally {
+            brokerChannel.unsubscribe(handler);
+            directory.removeListener(emitter);
+        }
+    }
+
+    @Test
+    void subscriptionIsPointedAtLocalTopicTest() {
+        Message<?> intercepted = directoryTopicInterceptor.preSend(TestUtil.subscribe("browser", "sub1", GameDirectoryEmitter.DIRECTORY_TOPIC), null);
+
+        String topic = GameDirectoryEmitter.topic(BaseService.getActiveGames().getNode());
+        assertEquals(topic, SimpMessageHeaderAccessor.getDestination(intercepted.getHeaders()));
+        assertEquals(topic, SimpMessageHeaderAccessor.getFirstNativeHeader("destination", intercepted.getHeaders()));
+        assertEquals("browser", SimpMessageHeaderAccessor.getSessionId(intercepted.getHeaders()));
+    }
+
+    private static JsonObject find(JsonArray games, String gameId) {
+        for (JsonElement game : games) {
+            if (gameId.equals(game.getAsJsonObject().get("id").getAsString()))
+                return game.getAsJsonObject();
+        }
+        return null;
+    }
+
+}
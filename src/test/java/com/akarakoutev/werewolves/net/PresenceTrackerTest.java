@@ -0,0 +1,70 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.TestUtil;
+import com.akarakoutev.werewolves.game.GameManager;
+import com.akarakoutev.werewolves.net.broadcast.PresenceTracker;
+import com.akarakoutev.werewolves.net.broadcast.SessionRegistry;
+import com.akarakoutev.werewolves.net.mvc.BaseService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "werewolves.presence.grace=1")
+@AutoConfigureMockMvc
+public class PresenceTrackerTest {
+
+    @Autowired
+    PresenceTracker presenceTracker;
+
+    @Autowired
+    SessionRegistry sessionRegistry;
+
+    private final TestUtil util;
+
+    @Autowired
+    public PresenceTrackerTest(MockMvc mockMvc) {
+        util = new TestUtil(mockMvc);
+    }
+
+    @Test
+    void droppedPlayerIsLoggedOutTest() throws InterruptedException {
+        String gameId = util.createGameRequest(2);
+        util.loginUserRequest(gameId, "dropped");
+        sessionRegistry.register(gameId, "dropped", "dropped-session");
+
+        assertEquals(1, presenceTracker.sessionEnded("dropped-session").size());
+        assertTrue(presenceTracker.isDropped(gameId, "dropped"));
+        assertTrue(awaitPlayers(gameId, 0));
+        assertFalse(presenceTracker.isDropped(gameId, "dropped"));
+    }
+
+    @Test
+    void reconnectedPlayerStaysTest() throws InterruptedException {
+        String gameId = util.createGameRequest(2);
+        util.loginUserRequest(gameId, "reconnected");
+        sessionRegistry.register(gameId, "reconnected", "first-session");
+
+        presenceTracker.sessionEnded("first-session");
+        sessionRegistry.register(gameId, "reconnected", "second-session");
+        assertFalse(presenceTracker.isDropped(gameId, "reconnected"));
+
+        assertFalse(awaitPlayers(gameId, 0));
+        sessionRegistry.release("second-session");
+    }
+
+    private static boolean awaitPlayers(String gameId, int count) throws InterruptedException {
+        GameManager gameManager = BaseService.getActiveGames().get(gameId);
+        long deadline = System.currentTimeMillis() + 2500;
+        while (System.currentTimeMillis() < deadline) {
+            if (gameManager.getGame().getPlayers().size() == count)
+                return true;
+            Thread.sleep(100);
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.net.exc.RateLimitException;
+import com.akarakoutev.werewolves.net.mvc.RateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final RateLimiter rateLimiter = new RateLimiter(new MockEnvironment()
+            .withProperty("werewolves.ratelimit.vote.rate", "0.001")
+            .withProperty("werewolves.ratelimit.vote.burst", "2"), registry);
+
+    @Test
+    void burstIsLimitedTest() throws RateLimitException {
+        rateLimiter.acquire(RateLimiter.Action.VOTE, "game", "alice");
+        rateLimiter.acquire(RateLimiter.Action.VOTE, "game", "alice");
+        assertThrows(RateLimitException.class, () -> rateLimiter.acquire(RateLimiter.Action.VOTE, "game", "alice"));
+
+        // Every player, game and action has its own bucket
+        rateLimiter.acquire(RateLimiter.Action.VOTE, "game", "bob");
+        rateLimiter.acquire(RateLimiter.Action.VOTE, "other", "alice");
+        rateLimiter.acquire(RateLimiter.Action.CHAT, "game", "alice");
+
+        assertEquals(1, registry.get("werewolves.ratelimit.throttled").tag("action", "vote").counter().count());
+    }
+
+    @Test
+    void concurrentCallsTakeOneTokenEachTest() throws InterruptedException {
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 100; i++) {
+            executor.execute(() -> {
+                try {
+                    rateLimiter.acquire(RateLimiter.Action.VOTE, "game", "carol");
+                    allowed.incrementAndGet();
+                } catch (RateLimitException ignored) {
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, allowed.get());
+    }
+
+}
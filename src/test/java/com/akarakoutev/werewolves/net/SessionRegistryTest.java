@@ -0,0 +1,163 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.TestUtil;
+import com.akarakoutev.werewolves.net.broadcast.Broadcaster;
+import com.akarakoutev.werewolves.net.broadcast.PrivateGameEmitter;
+import com.akarakoutev.werewolves.net.broadcast.PublicGameEmitter;
+import com.akarakoutev.werewolves.net.broadcast.SessionRegistry;
+import com.akarakoutev.werewolves.net.message.Frame;
+import com.akarakoutev.werewolves.net.message.MessageType;
+import com.akarakoutev.werewolves.net.message.MessageUtil;
+import com.akarakoutev.werewolves.net.message.ServerMessage;
+import com.akarakoutev.werewolves.net.mvc.GameService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class SessionRegistryTest {
+
+    @Autowired
+    GameService gameService;
+
+    @Autowired
+    SessionRegistry sessionRegistry;
+
+    @Autowired
+    Broadcaster broadcaster;
+
+    @Autowired
+    PublicGameEmitter publicGameEmitter;
+
+    @Autowired
+    PrivateGameEmitter privateGameEmitter;
+
+    @Autowired
+    @Qualifier("brokerChannel")
+    SubscribableChannel brokerChannel;
+
+    private final SessionRegistry registry = new SessionRegistry();
+
+    private final TestUtil util;
+
+    @Autowired
+    public SessionRegistryTest(MockMvc mockMvc) {
+        util = new TestUtil(mockMvc);
+    }
+
+    @Test
+    void unsubscribedSessionHasNoDestinationTest() {
+        assertTrue(registry.register("game", "alice", "s1"));
+
+        assertEquals("s1", registry.getSessionId("game", "alice"));
+        assertNull(registry.getDestination("game", "alice", SessionRegistry.GAME_QUEUE));
+    }
+
+    @Test
+    void sessionRoutingTest() {
+        registry.preSend(TestUtil.subscribe("s1", "sub1", "/user/queue/game"), null);
+        registry.register("game", "alice", "s1");
+
+        assertEquals("/user/s1/queue/game", registry.getDestination("game", "alice", SessionRegistry.GAME_QUEUE));
+        assertNull(registry.getDestination("game", "alice", SessionRegistry.LOBBY_QUEUE));
+        assertNull(registry.getDestination("game", "bob", SessionRegistry.GAME_QUEUE));
+        assertEquals("s1", SessionRegistry.sessionOf("/user/s1/queue/game"));
+        assertNull(SessionRegistry.sessionOf("/topic/game/game/alice"));
+
+        // Another session can not take over a live binding, nor unbind it
+        registry.preSend(TestUtil.subscribe("s2", "sub1", "/user/queue/game"), null);
+        assertFalse(registry.register("game", "alice", "s2"));
+        registry.unregister("game", "alice", "s2");
+        assertEquals("/user/s1/queue/game", registry.getDestination("game", "alice", SessionRegistry.GAME_QUEUE));
+
+        // Once the old session has ended, a reconnect binds the player to the new one
+        assertEquals(1, registry.release("s1").size());
+        assertTrue(registry.register("game", "alice", "s2"));
+        assertEquals("/user/s2/queue/game", registry.getDestination("game", "alice", SessionRegistry.GAME_QUEUE));
+        assertTrue(registry.isBound("game", "alice", "s2"));
+
+        registry.unregister("game", "alice", "s2");
+        assertNull(registry.getSessionId("game", "alice"));
+        registry.register("game", "alice", "s2");
+        assertEquals("game/alice", registry.release("s2").get(0).toString());
+        assertNull(registry.getSessionId("game", "alice"));
+    }
+
+    @Test
+    void privateMessageGoesToSessionTest() {
+        List<Message<?>> sent = new ArrayList<>();
+        MessageHandler handler = message -> {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            if (destination != null && destination.startsWith("/queue/game-user"))
+                sent.add(message);
+        };
+        brokerChannel.subscribe(handler);
+        try {
+            assertNull(gameService.gameDestination("routed", "alice"));
+            // Only a player of an existing game can be bound
+            assertFalse(gameService.bindSession("routed", "alice", "token", "routed-session"));
+
+            sessionRegistry.preSend(TestUtil.subscribe("routed-session", "sub1", "/user/queue/game"), null);
+            sessionRegistry.register("routed", "alice", "routed-session");
+            String destination = gameService.gameDestination("routed", "alice");
+            assertEquals("/user/routed-session/queue/game", destination);
+
+            Frame frame = Frame.of(new ServerMessage(MessageUtil.toContent("message", "test"), MessageType.NOTIFY));
+            broadcaster.send(destination, frame);
+
+            assertEquals(1, sent.size());
+            assertEquals("/queue/game-userrouted-session", SimpMessageHeaderAccessor.getDestination(sent.get(0).getHeaders()));
+            assertSame(frame.getPayload(), sent.get(0).getPayload());
+        } finally {
+            brokerChannel.unsubscribe(handler);
+            sessionRegistry.release("routed-session");
+        }
+    }
+
+    @Test
+    void claimOfLoggedInNameWithoutTokenIsRefusedTest() {
+        String gameId = util.createGameRequest(2);
+        String token = util.loginUserRequest(gameId, "victim");
+        try {
+            // Another session claims the name before the player subscribes, through every subscribe it can send
+            publicGameEmitter.gameSubscribePublic(claim("victim", null), gameId, session("attacker-session"));
+            privateGameEmitter.gameSubscribePrivate(claim("victim", null), gameId, "victim", session("attacker-session"));
+            privateGameEmitter.gameSubscribePrivate(claim("victim", "guessed"), gameId, "victim", session("attacker-session"));
+            assertFalse(sessionRegistry.isBound(gameId, "victim", "attacker-session"));
+            assertNull(sessionRegistry.getSessionId(gameId, "victim"));
+
+            privateGameEmitter.gameSubscribePrivate(claim("victim", token), gameId, "victim", session("victim-session"));
+            assertTrue(sessionRegistry.isBound(gameId, "victim", "victim-session"));
+        } finally {
+            sessionRegistry.release("victim-session");
+            util.deleteGameRequest(gameId);
+        }
+    }
+
+    private static com.akarakoutev.werewolves.net.message.Message claim(String username, String token) {
+        return new com.akarakoutev.werewolves.net.message.Message(token == null ? null : MessageUtil.toContent("token", token)).withSender(username);
+    }
+
+    private static SimpMessageHeaderAccessor session(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(new HashMap<>());
+        return accessor;
+    }
+
+}
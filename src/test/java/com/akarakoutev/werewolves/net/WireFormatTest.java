@@ -0,0 +1,182 @@
+package com.akarakoutev.werewolves.net;
+
+import com.akarakoutev.werewolves.TestUtil;
+import com.akarakoutev.werewolves.chat.Chat;
+import com.akarakoutev.werewolves.net.broadcast.FrameCompressor;
+import com.akarakoutev.werewolves.net.broadcast.WireFormatInterceptor;
+import com.akarakoutev.werewolves.net.message.*;
+import com.akarakoutev.werewolves.net.message.payload.ChatPayload;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class WireFormatTest {
+
+    @Autowired
+    WireFormatInterceptor wireFormatInterceptor;
+
+    @Test
+    void binaryRoundTripTest() {
+        Chat chat = new Chat(UUID.randomUUID(), Chat.Type.DAY, 1);
+        for (int i = 0; i < 20; i++) {
+            chat.addMessage(LocalTime.of(12, 0), i % 2 == 0 ? "alice" : "bob", "message " + i);
+        }
+        ServerMessage message = new ServerMessage(ChatPayload.latest(chat), MessageType.CHAT);
+
+        byte[] json = MessageEncoder.encode(message);
+        byte[] binary = MessageEncoder.encode(message, WireFormat.BINARY);
+
+        assertEquals(JsonParser.parseString(new String(json, StandardCharsets.UTF_8)), BinaryJsonReader.read(binary));
+        assertTrue(binary.length < json.length);
+    }
+
+    @Test
+    void deeplyNestedBinaryIsRefusedTest() {
+        byte[] nested = new byte[64 * 1024];
+        // The ARRAY tag, opening a new array on every byte
+        Arrays.fill(nested, (byte) 8);
+        nested[0] = (byte) BinaryJsonWriter.VERSION;
+
+        assertThrows(JsonParseException.class, () -> BinaryJsonReader.read(nested));
+    }
+
+    @Test
+    void binaryBatchTest() {
+        Frame first = Frame.of(new ServerMessage(MessageUtil.toContent("message", "first"), MessageType.NOTIFY), true);
+        Frame second = Frame.of(new ServerMessage(MessageUtil.toContent("message", "second"), MessageType.NOTIFY), true);
+
+        Frame batch = Frame.batch(List.of(first, second));
+
+        assertEquals(JsonParser.parseString(batch.toString()), BinaryJsonReader.read(batch.getBinary()));
+    }
+
+    @Test
+    void binaryMessageIsReadTest() {
+        com.akarakoutev.werewolves.net.message.Message sent = new com.akarakoutev.werewolves.net.message.Message(
+                MessageUtil.toContent("spriteWidth", "128")).withSender("alice").withType(MessageType.DATA);
+
+        com.akarakoutev.werewolves.net.message.Message read = BinaryJsonReader.readMessage(MessageEncoder.encode(sent, WireFormat.BINARY));
+
+        assertEquals("alice", read.getSender());
+        assertEquals(MessageType.DATA, read.getType());
+        assertEquals(sent.getContent(), read.getContent());
+    }
+
+    @Test
+    void negotiatedSessionReceivesBinaryTest() {
+        String sessionId = UUID.randomUUID().toString();
+        Frame frame = Frame.of(new ServerMessage(MessageUtil.toContent("message", "test"), MessageType.NOTIFY), true);
+
+        assertSame(frame.getPayload(), wireFormatInterceptor.preSend(outbound(sessionId, frame), null).getPayload());
+
+        wireFormatInterceptor.preSend(subscribe(sessionId, WireFormat.HEADER, WireFormat.BINARY.getValue()), null);
+        Message<?> delivered = wireFormatInterceptor.preSend(outbound(sessionId, frame), null);
+        assertSame(frame.getBinary(), delivered.getPayload());
+        assertEquals(WireFormat.BINARY.getContentType(), delivered.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+        assertEquals(WireFormat.BINARY.getValue(), SimpMessageHeaderAccessor.getFirstNativeHeader(WireFormat.HEADER, delivered.getHeaders()));
+        assertEquals(WireFormat.BINARY, wireFormatInterceptor.getFormat(sessionId));
+
+        wireFormatInterceptor.preSend(control(sessionId, SimpMessageType.DISCONNECT), null);
+        assertEquals(WireFormat.JSON, wireFormatInterceptor.getFormat(sessionId));
+    }
+
+    private Message<?> subscribe(String sessionId, String header, String value) {
+        Map<String, Object> attributes = new HashMap<>();
+        wireFormatInterceptor.beforeHandshake(null, null, null, attributes);
+        return TestUtil.subscribe(sessionId, "sub1", "/topic/test", attributes, header, value);
+    }
+
+    @Test
+    void largeFramesAreCompressedTest() {
+        String sessionId = UUID.randomUUID().toString();
+        wireFormatInterceptor.preSend(subscribe(sessionId, FrameCompressor.HEADER, FrameCompressor.DEFLATE), null);
+        assertTrue(wireFormatInterceptor.isCompressed(sessionId));
+
+        Frame small = Frame.of(new ServerMessage(MessageUtil.toContent("message", "test"), MessageType.NOTIFY));
+        assertSame(small.getPayload(), wireFormatInterceptor.preSend(outbound(sessionId, small), null).getPayload());
+
+        Frame large = Frame.of(new ServerMessage(MessageUtil.toContent("message", "test ".repeat(1000)), MessageType.NOTIFY));
+        Message<?> delivered = wireFormatInterceptor.preSend(outbound(sessionId, large), null);
+        byte[] deflated = (byte[]) delivered.getPayload();
+        assertTrue(deflated.length < large.getSize());
+        assertEquals(FrameCompressor.DEFLATE, SimpMessageHeaderAccessor.getFirstNativeHeader(WireFormatInterceptor.CONTENT_ENCODING, delivered.getHeaders()));
+        assertSame(deflated, wireFormatInterceptor.preSend(outbound(sessionId, large), null).getPayload());
+        assertArrayEquals(large.getPayload(), inflate(deflated));
+
+        wireFormatInterceptor.preSend(control(sessionId, SimpMessageType.DISCONNECT), null);
+    }
+
+    @Test
+    void compressedJsonFrameOfBinarySessionNamesItsFormatTest() {
+        String sessionId = UUID.randomUUID().toString();
+        wireFormatInterceptor.preSend(subscribe(sessionId, WireFormat.HEADER, WireFormat.BINARY.getValue()), null);
+        wireFormatInterceptor.preSend(subscribe(sessionId, FrameCompressor.HEADER, FrameCompressor.DEFLATE), null);
+
+        // Built without its binary form, so the binary session receives it as JSON
+        Frame large = Frame.of(new ServerMessage(MessageUtil.toContent("message", "test ".repeat(1000)), MessageType.NOTIFY));
+        assertNull(large.getBinary());
+        Message<?> delivered = wireFormatInterceptor.preSend(outbound(sessionId, large), null);
+
+        assertEquals(FrameCompressor.DEFLATE, SimpMessageHeaderAccessor.getFirstNativeHeader(WireFormatInterceptor.CONTENT_ENCODING, delivered.getHeaders()));
+        assertEquals(WireFormat.JSON.getValue(), SimpMessageHeaderAccessor.getFirstNativeHeader(WireFormat.HEADER, delivered.getHeaders()));
+        assertArrayEquals(large.getPayload(), inflate((byte[]) delivered.getPayload()));
+
+        wireFormatInterceptor.preSend(control(sessionId, SimpMessageType.DISCONNECT), null);
+    }
+
+    private static byte[] inflate(byte[] deflated) {
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(deflated);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        try {
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && inflater.needsInput())
+                    break;
+                out.write(buffer, 0, length);
+            }
+        } catch (DataFormatException e) {
+            fail(e);
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static Message<?> control(String sessionId, SimpMessageType type) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> outbound(String sessionId, Frame frame) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/test");
+        accessor.setHeader("werewolves.frame", frame);
+        return MessageBuilder.createMessage(frame.getPayload(), accessor.getMessageHeaders());
+    }
+
+}